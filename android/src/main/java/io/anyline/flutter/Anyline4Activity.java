@@ -1,5 +1,6 @@
 package io.anyline.flutter;
 
+import android.content.Intent;
 import android.content.res.ColorStateList;
 import android.graphics.Rect;
 import android.os.Build;
@@ -15,35 +16,18 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 
 import at.nineyards.anyline.core.RunFailure;
 import at.nineyards.anyline.core.Vector_Contour;
 import at.nineyards.anyline.core.exception_error_codes;
 import io.anyline.AnylineDebugListener;
 import io.anyline.camera.CameraController;
-import io.anyline.plugin.ScanResult;
-import io.anyline.plugin.ScanResultListener;
-import io.anyline.plugin.barcode.BarcodeScanResult;
-import io.anyline.plugin.barcode.BarcodeScanViewPlugin;
-import io.anyline.plugin.id.DrivingLicenseConfig;
-import io.anyline.plugin.id.DrivingLicenseIdentification;
-import io.anyline.plugin.id.GermanIdFrontConfig;
-import io.anyline.plugin.id.GermanIdFrontIdentification;
-import io.anyline.plugin.id.ID;
 import io.anyline.plugin.id.IdScanPlugin;
 import io.anyline.plugin.id.IdScanViewPlugin;
-import io.anyline.plugin.id.Identification;
 import io.anyline.plugin.id.MrzConfig;
-import io.anyline.plugin.id.MrzIdentification;
-import io.anyline.plugin.id.UniversalIdConfig;
-import io.anyline.plugin.licenseplate.LicensePlateScanResult;
 import io.anyline.plugin.licenseplate.LicensePlateScanViewPlugin;
 import io.anyline.plugin.meter.MeterScanMode;
-import io.anyline.plugin.meter.MeterScanResult;
 import io.anyline.plugin.meter.MeterScanViewPlugin;
-import io.anyline.plugin.ocr.OcrScanResult;
 import io.anyline.plugin.ocr.OcrScanViewPlugin;
 import io.anyline.view.AbstractBaseScanViewPlugin;
 import io.anyline.view.ParallelScanViewComposite;
@@ -53,18 +37,56 @@ import io.anyline.view.SerialScanViewComposite;
 public class Anyline4Activity extends AnylineBaseActivity {
     private static final String TAG = Anyline4Activity.class.getSimpleName();
 
+    private static final long SCAN_MODE_SWITCH_DELAY_MILLIS = 200;
+
     private ScanView anylineScanView;
     private AbstractBaseScanViewPlugin scanViewPlugin;
     private RadioGroup radioGroup;
     private AnylineUIConfig anylineUIConfig;
     private String cropAndTransformError;
+    private ScanResultPipeline resultPipeline;
+    // null if the config does not ask for native barcodes
+    private NativeBarcodeDetection nativeBarcodeDetection;
+    // the meter scan mode selected last, applied once the selection settled (see switchScanMode)
+    private MeterScanMode pendingScanMode;
+    private final Runnable applyScanMode = new Runnable() {
+        @Override
+        public void run() {
+            MeterScanMode scanMode = pendingScanMode;
+            pendingScanMode = null;
+            MeterScanViewPlugin meterScanViewPlugin = (MeterScanViewPlugin) scanViewPlugin;
+            if (scanMode == null || meterScanViewPlugin.getScanMode() == scanMode || isFinishing()) {
+                return;
+            }
+            // only the plugin is restarted with the new mode, the camera keeps running
+            meterScanViewPlugin.stop();
+            meterScanViewPlugin.setScanMode(scanMode);
+            meterScanViewPlugin.start();
+        }
+    };
     private Boolean isFirstCameraOpen; // only if camera is opened the first time get coordinates of the cutout to avoid flickering when switching between analog and digital
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (scanConfig == null) {
+            // invalid config, already finishing
+            return;
+        }
 
         isFirstCameraOpen = true;
+        resultPipeline = new ScanResultPipeline(this, scanConfig, structuredResult, ScanTrace.getScan(),
+                new ScanResultPipeline.Output() {
+                    @Override
+                    public void onResult(ResultWriter writer) {
+                        setResult(scanViewPlugin, writer);
+                    }
+
+                    @Override
+                    public void onPartialResult(Object result) {
+                        ResultReporter.onResult(result, false);
+                    }
+                });
 
         // init the scan view
         anylineScanView = new ScanView(this, null);
@@ -92,7 +114,43 @@ public class Anyline4Activity extends AnylineBaseActivity {
 
         // stop scanning
         anylineScanView.stop();
-        anylineScanView.releaseCameraInBackground();
+        // the camera of a session is kept open for the next scan, until the session is closed
+        if (!session || isFinishing()) {
+            anylineScanView.releaseCameraInBackground();
+        }
+    }
+
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        // the next scan of the session, only started by flutter once the final result of the previous one is reported
+        setIntent(intent);
+        startNextScan(intent);
+        resultPipeline.startNextScan(structuredResult, ScanTrace.getScan());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (resultPipeline != null) {
+            resultPipeline.shutdown();
+        }
+        if (nativeBarcodeDetection != null) {
+            nativeBarcodeDetection.stop();
+        }
+        if (anylineScanView != null) {
+            anylineScanView.removeCallbacks(applyScanMode);
+        }
+    }
+
+    /**
+     * Switches the meter scan mode once no other mode was selected for {@link #SCAN_MODE_SWITCH_DELAY_MILLIS}, so
+     * quick taps on the mode buttons only restart the plugin once, with the mode selected last.
+     */
+    private void switchScanMode(MeterScanMode scanMode) {
+        pendingScanMode = scanMode;
+        anylineScanView.removeCallbacks(applyScanMode);
+        anylineScanView.postDelayed(applyScanMode, SCAN_MODE_SWITCH_DELAY_MILLIS);
     }
 
     private void setDebugListener() {
@@ -100,6 +158,7 @@ public class Anyline4Activity extends AnylineBaseActivity {
             scanViewPlugin.setDebugListener(new AnylineDebugListener() {
                 @Override
                 public void onDebug(String name, Object value) {
+                    ScanTrace.getScan().mark(ScanTrace.FIRST_FRAME);
 
                     if (name.equals(AnylineDebugListener.BRIGHTNESS_VARIABLE_NAME)
                             && value.getClass().equals(AnylineDebugListener.BRIGHTNESS_VARIABLE_CLASS)) {
@@ -116,6 +175,7 @@ public class Anyline4Activity extends AnylineBaseActivity {
 
                 @Override
                 public void onRunSkipped(RunFailure runFailure) {
+                    ScanTrace.getScan().mark(ScanTrace.FIRST_FRAME);
                     // Show Toast, if cropAndTransform is on true, but not all corners are detected
                     if (runFailure != null
                             && runFailure.errorCode() == exception_error_codes.PointsOutOfCutout.swigValue()) {
@@ -129,69 +189,53 @@ public class Anyline4Activity extends AnylineBaseActivity {
 
     private void initAnyline() {
         try {
-            JSONObject json = new JSONObject(configJson);
-
-            initScanViewPlugin(json);
+            initScanViewPlugin();
 
             if (scanViewPlugin != null) {
-                //set nativeBarcodeMode
-                AnylinePluginHelper.setNativeBarcodeMode(json, anylineScanView);
+                // the barcodes of the detection are added to the results of this activity
+                nativeBarcodeDetection = AnylinePluginHelper.startNativeBarcodeDetection(scanConfig, anylineScanView);
+                resultPipeline.setNativeBarcodeDetection(nativeBarcodeDetection);
 
                 if (!(scanViewPlugin instanceof MeterScanViewPlugin)) {
                     setContentView(anylineScanView);
                 }
 
-                if (scanViewPlugin instanceof SerialScanViewComposite || scanViewPlugin instanceof ParallelScanViewComposite) {
-                    scanViewPlugin.addScanResultListener(compositeResultListener());
-
-                } else if (scanViewPlugin instanceof LicensePlateScanViewPlugin) {
-                    if (json.has("reportingEnabled")) {
-                        //(IdScanViewPlugin) scanViewPlugin.setReportingEnabled(json.optBoolean("reportingEnabled", true));
-                        (((IdScanViewPlugin) scanViewPlugin).getScanPlugin()).setReportingEnabled(json.optBoolean("reportingEnabled", true));
-                    }
-                    scanViewPlugin.addScanResultListener(licensePlateResultListener());
-
-                } else if (scanViewPlugin instanceof IdScanViewPlugin) {
-                    if (((IdScanPlugin) ((IdScanViewPlugin) scanViewPlugin).getScanPlugin()).getIdConfig() instanceof MrzConfig) {
-
-                        if (json.has("cropAndTransformErrorMessage")) {
-                            setDebugListener();
-                            cropAndTransformError = json.getString("cropAndTransformErrorMessage");
+                if (!(scanViewPlugin instanceof SerialScanViewComposite)
+                        && !(scanViewPlugin instanceof ParallelScanViewComposite)) {
+                    if (scanViewPlugin instanceof LicensePlateScanViewPlugin) {
+                        if (scanConfig.getReportingEnabled() != null) {
+                            //(IdScanViewPlugin) scanViewPlugin.setReportingEnabled(json.optBoolean("reportingEnabled", true));
+                            (((IdScanViewPlugin) scanViewPlugin).getScanPlugin()).setReportingEnabled(scanConfig.getReportingEnabled());
                         }
 
-                        scanViewPlugin.addScanResultListener(mrzResultListener());
-                    } else if (((IdScanPlugin) ((IdScanViewPlugin) scanViewPlugin).getScanPlugin()).getIdConfig() instanceof DrivingLicenseConfig) {
-                        scanViewPlugin.addScanResultListener(drivingLicenseResultListener());
-                    } else if (((IdScanPlugin) ((IdScanViewPlugin) scanViewPlugin).getScanPlugin()).getIdConfig() instanceof GermanIdFrontConfig) {
-                        scanViewPlugin.addScanResultListener(germanIdFrontResultListener());
-                    } else if (((IdScanPlugin) ((IdScanViewPlugin) scanViewPlugin).getScanPlugin()).getIdConfig() instanceof UniversalIdConfig) {
-                        scanViewPlugin.addScanResultListener(universalIdResultListener());
-                    }
-                } else if (scanViewPlugin instanceof OcrScanViewPlugin) {
-                    if (json.has("reportingEnabled")) {
-                        //scanViewPlugin.setReportingEnabled(json.optBoolean("reportingEnabled", true));
-                        (((OcrScanViewPlugin) scanViewPlugin).getScanPlugin()).setReportingEnabled(json.optBoolean("reportingEnabled", true));
-                    }
-
-                    scanViewPlugin.addScanResultListener(ocrResultListener());
-
-                } else if (scanViewPlugin instanceof BarcodeScanViewPlugin) {
+                    } else if (scanViewPlugin instanceof IdScanViewPlugin) {
+                        if (((IdScanPlugin) ((IdScanViewPlugin) scanViewPlugin).getScanPlugin()).getIdConfig() instanceof MrzConfig) {
 
-                    scanViewPlugin.addScanResultListener(barcodeResultListener());
+                            if (scanConfig.getCropAndTransformErrorMessage() != null) {
+                                setDebugListener();
+                                cropAndTransformError = scanConfig.getCropAndTransformErrorMessage();
+                            }
+                        }
+                    } else if (scanViewPlugin instanceof OcrScanViewPlugin) {
+                        if (scanConfig.getReportingEnabled() != null) {
+                            //scanViewPlugin.setReportingEnabled(json.optBoolean("reportingEnabled", true));
+                            (((OcrScanViewPlugin) scanViewPlugin).getScanPlugin()).setReportingEnabled(scanConfig.getReportingEnabled());
+                        }
 
-                } else if (scanViewPlugin instanceof MeterScanViewPlugin) {
+                    } else if (scanViewPlugin instanceof MeterScanViewPlugin) {
 
-                    if (json.has("reportingEnabled")) {
-                        //scanViewPlugin.setReportingEnabled(json.optBoolean("reportingEnabled", true));
-                        (((MeterScanViewPlugin) scanViewPlugin).getScanPlugin()).setReportingEnabled(json.optBoolean("reportingEnabled", true));
+                        if (scanConfig.getReportingEnabled() != null) {
+                            //scanViewPlugin.setReportingEnabled(json.optBoolean("reportingEnabled", true));
+                            (((MeterScanViewPlugin) scanViewPlugin).getScanPlugin()).setReportingEnabled(scanConfig.getReportingEnabled());
 
+                        }
+                        // create the radio button for the UI
+                        createSegmentRadioButtonUI();
                     }
-                    // create the radio button for the UI
-                    createSegmentRadioButtonUI(json);
-
-                    anylineScanView.setCameraOpenListener(this);
-                    scanViewPlugin.addScanResultListener(meterResultListener());
                 }
+                // also traces when the camera is opened
+                anylineScanView.setCameraOpenListener(this);
+                resultPipeline.addResultListeners(scanViewPlugin);
             }
         } catch (Exception e) {
             // JSONException or IllegalArgumentException is possible for errors in json
@@ -203,12 +247,14 @@ public class Anyline4Activity extends AnylineBaseActivity {
 
     }
 
-    private void initScanViewPlugin(JSONObject json) {
+    private void initScanViewPlugin() {
         try {
-            // this is used for the OCR Plugin, when languages has to be added
-            json = AnylinePluginHelper.setLanguages(json, getApplicationContext());
+            // this is used for the OCR Plugin, when languages has to be added (no-op if done by METHOD_INIT_ANYLINE)
+            TraineddataInstaller.install(scanConfig.getOcrLanguageAssets(), getApplicationContext());
+            ScanTrace.getScan().mark(ScanTrace.TRAINEDDATA_INSTALLED);
 
-            if (json.has("serialViewPluginComposite") || json.has("parallelViewPluginComposite")) {
+            JSONObject json = scanConfig.getOptions();
+            if (scanConfig.getPluginKind() == ScanConfig.PluginKind.COMPOSITE) {
                 anylineScanView.initComposite(json); // for composite
                 scanViewPlugin = anylineScanView.getScanViewPlugin();
             } else {
@@ -252,10 +298,11 @@ public class Anyline4Activity extends AnylineBaseActivity {
         });
     }
 
-    private void createSegmentRadioButtonUI(JSONObject json) {
+    private void createSegmentRadioButtonUI() {
 
         final String scanModeString = ((MeterScanViewPlugin) scanViewPlugin).getScanMode().toString();
-        anylineUIConfig = new AnylineUIConfig(this, json);
+        anylineUIConfig = scanConfig.getSegmentConfig() != null
+                ? scanConfig.getSegmentConfig() : new AnylineUIConfig(scanConfig.getOptions());
 
         // Creating a new RelativeLayout
         final RelativeLayout relativeLayout = new RelativeLayout(this);
@@ -301,15 +348,7 @@ public class Anyline4Activity extends AnylineBaseActivity {
                 public void onCheckedChanged(RadioGroup group, int checkedId) {
                     View button = group.findViewById(checkedId);
                     String mode = modes.get(group.indexOfChild(button));
-                    ((MeterScanViewPlugin) scanViewPlugin).setScanMode(MeterScanMode.valueOf(mode));
-                    anylineScanView.releaseCameraInBackground();
-                    anylineScanView.stop();
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    anylineScanView.start();
+                    switchScanMode(MeterScanMode.valueOf(mode));
                 }
             });
 
@@ -324,255 +363,4 @@ public class Anyline4Activity extends AnylineBaseActivity {
         setContentView(relativeLayout, matchParentParams);
 
     }
-
-    private ScanResultListener compositeResultListener() {
-        return result -> {
-            // only triggered if all plugins reached a result
-            JSONObject jsonResult = new JSONObject();
-            //String sResult = "";
-
-            for (ScanResult subResult : (Collection<ScanResult>) result.getResult()) {
-                if (subResult instanceof LicensePlateScanResult) {
-                    JSONObject jsonLPResult = new JSONObject();
-                    try {
-                        LicensePlateScanResult licensePlateResult = (LicensePlateScanResult) subResult;
-                        jsonLPResult.put("country", licensePlateResult.getCountry());
-                        jsonLPResult.put("licensePlate", licensePlateResult.getResult());
-                        jsonLPResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, licensePlateResult,
-                                jsonLPResult);
-
-                        jsonResult.put(subResult.getPluginId(), jsonLPResult);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-                } else if (subResult.getResult() instanceof MrzIdentification) {
-                    JSONObject jsonIdResult = ((MrzIdentification) subResult.getResult()).toJSONObject();
-                    try {
-                        if (jsonIdResult.get("issuingCountryCode").equals("D")
-                                && jsonIdResult.get("documentType").equals("ID")) {
-                            if (jsonIdResult.get("issuingCountryCode").equals("D")) {
-                                jsonIdResult.put("address", jsonResult.get("address"));
-                            } else {
-                                jsonIdResult.remove("address");
-                            }
-                        }
-                        jsonIdResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, subResult,
-                                jsonIdResult);
-
-                        jsonResult.put(subResult.getPluginId(), jsonIdResult);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-                } else if (subResult.getResult() instanceof DrivingLicenseIdentification) {
-                    JSONObject jsonIdResult = ((DrivingLicenseIdentification) subResult.getResult())
-                            .toJSONObject();
-                    try {
-                        jsonIdResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, subResult,
-                                jsonIdResult);
-
-                        jsonResult.put(subResult.getPluginId(), jsonIdResult);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-                } else if (subResult.getResult() instanceof GermanIdFrontIdentification) {
-                    JSONObject jsonIdResult = ((GermanIdFrontIdentification) subResult.getResult()).toJSONObject();
-                    try {
-                        jsonIdResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, subResult,
-                                jsonIdResult);
-
-                        jsonResult.put(subResult.getPluginId(), jsonIdResult);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-                } else if (subResult instanceof OcrScanResult) {
-                    JSONObject jsonOcrResult = new JSONObject();
-                    try {
-                        jsonOcrResult.put("text", (((OcrScanResult) subResult).getResult()).trim());
-                        jsonOcrResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, subResult,
-                                jsonOcrResult);
-                        jsonResult.put(subResult.getPluginId(), jsonOcrResult);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-                } else if (subResult instanceof BarcodeScanResult) {
-                    JSONObject jsonBcResult = new JSONObject();
-                    try {
-                        jsonBcResult.put("value", subResult.getResult());
-                        jsonBcResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, subResult,
-                                jsonBcResult);
-                        jsonResult.put(subResult.getPluginId(), jsonBcResult);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
-                } else if (subResult instanceof MeterScanResult) {
-                    JSONObject jsonMeterResult = new JSONObject();
-                    try {
-                        jsonMeterResult = AnylinePluginHelper.setMeterScanMode(
-                                ((MeterScanResult) subResult).getScanMode(), jsonMeterResult);
-                        jsonMeterResult.put("reading", subResult.getResult());
-                        jsonMeterResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, subResult,
-                                jsonMeterResult);
-                        jsonResult.put(subResult.getPluginId(), jsonMeterResult);
-                        AnylinePluginHelper.clearFinalBarcodeList();    // otherwise result from previous scan could be shown if new scan does not include barcode
-
-                    } catch (Exception e) {
-                        Log.e(TAG, "EXCEPTION", e);
-                    }
-                }
-            }
-            setResult(scanViewPlugin, jsonResult);
-        };
-    }
-
-    private ScanResultListener<LicensePlateScanResult> licensePlateResultListener() {
-        return licensePlateResult -> {
-            JSONObject jsonResult = new JSONObject();
-            try {
-                jsonResult.put("country", licensePlateResult.getCountry());
-                jsonResult.put("licensePlate", licensePlateResult.getResult());
-
-                jsonResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, licensePlateResult,
-                        jsonResult);
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-
-            setResult(scanViewPlugin, jsonResult);
-        };
-    }
-
-    private ScanResultListener<ScanResult<ID>> mrzResultListener() {
-        return idScanResult -> {
-            JSONObject jsonResult = ((MrzIdentification) idScanResult.getResult()).toJSONObject();
-            try {
-                if (jsonResult.get("issuingCountryCode").equals("D")
-                        && jsonResult.get("documentType").equals("ID")) {
-                    if (jsonResult.get("issuingCountryCode").equals("D")) {
-                        jsonResult.put("address", jsonResult.get("address"));
-                    } else {
-                        jsonResult.remove("address");
-                    }
-
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-
-            try {
-                jsonResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, idScanResult,
-                        jsonResult);
-            } catch (Exception e) {
-                Log.e(TAG, "Exception is: ", e);
-
-            }
-            setResult(scanViewPlugin, jsonResult);
-        };
-    }
-
-    private ScanResultListener<ScanResult<ID>> drivingLicenseResultListener() {
-        return idScanResult -> {
-            JSONObject jsonResult = ((DrivingLicenseIdentification) idScanResult.getResult())
-                    .toJSONObject();
-
-            try {
-                jsonResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, idScanResult,
-                        jsonResult);
-            } catch (Exception e) {
-                Log.e(TAG, "Exception is: ", e);
-
-            }
-
-            setResult(scanViewPlugin, jsonResult);
-
-        };
-    }
-
-    private ScanResultListener<ScanResult<ID>> germanIdFrontResultListener() {
-        return idScanResult -> {
-            JSONObject jsonResult = ((GermanIdFrontIdentification) idScanResult.getResult()).toJSONObject();
-
-            try {
-                jsonResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, idScanResult,
-                        jsonResult);
-            } catch (Exception e) {
-                Log.e(TAG, "Exception is: ", e);
-
-            }
-            setResult(scanViewPlugin, jsonResult);
-        };
-    }
-
-    private ScanResultListener<ScanResult<ID>> universalIdResultListener() {
-        return idScanResult -> {
-            Identification identification = (Identification) idScanResult.getResult();
-            HashMap<String, String> data = (HashMap<String, String>) identification.getResultData();
-
-            JSONObject jsonResult = new JSONObject(data);
-
-            try {
-                jsonResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, idScanResult,
-                        jsonResult);
-            } catch (Exception e) {
-                Log.e(TAG, "Exception is: ", e);
-
-            }
-            setResult(scanViewPlugin, jsonResult);
-        };
-    }
-
-    private ScanResultListener<OcrScanResult> ocrResultListener() {
-        return ocrScanResult -> {
-            JSONObject jsonResult = new JSONObject();
-            try {
-                jsonResult.put("text", ocrScanResult.getResult().trim());
-                jsonResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, ocrScanResult,
-                        jsonResult);
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-            setResult(scanViewPlugin, jsonResult);
-
-        };
-    }
-
-    private ScanResultListener<BarcodeScanResult> barcodeResultListener() {
-        return barcodeScanResult -> {
-            JSONObject jsonResult = new JSONObject();
-            try {
-
-                jsonResult.put("value", barcodeScanResult.getResult());
-
-                //TODO fix barcode (IB)
-               // jsonResult.put("format", barcodeScanResult.getBarcodeFormat());
-                jsonResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, barcodeScanResult,
-                        jsonResult);
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-
-            setResult(scanViewPlugin, jsonResult);
-
-        };
-    }
-
-    private ScanResultListener<MeterScanResult> meterResultListener() {
-        return meterScanResult -> {
-            JSONObject jsonResult = new JSONObject();
-            try {
-                jsonResult = AnylinePluginHelper.setMeterScanMode(meterScanResult.getScanMode(),
-                        jsonResult);
-                jsonResult.put("reading", meterScanResult.getResult());
-
-                jsonResult = AnylinePluginHelper.jsonHelper(Anyline4Activity.this, meterScanResult,
-                        jsonResult);
-
-            } catch (Exception e) {
-                Log.e(TAG, "EXCEPTION", e);
-
-            }
-
-            setResult(scanViewPlugin, jsonResult);
-            AnylinePluginHelper.clearFinalBarcodeList();    // otherwise result from previous scan could be shown if new scan does not include barcode
-        };
-    }
-}
\ No newline at end of file
+}
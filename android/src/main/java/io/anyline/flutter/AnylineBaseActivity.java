@@ -2,7 +2,6 @@ package io.anyline.flutter;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Color;
 import android.graphics.PointF;
 import android.os.Bundle;
 import android.util.Log;
@@ -16,25 +15,15 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import at.nineyards.anyline.core.LicenseException;
-import io.anyline.AnylineSDK;
 import io.anyline.camera.CameraConfig;
 import io.anyline.camera.CameraController;
-import io.anyline.camera.CameraFeatures;
 import io.anyline.camera.CameraOpenListener;
-import io.anyline.plugin.barcode.BarcodeScanViewPlugin;
-import io.anyline.plugin.id.IdScanViewPlugin;
-import io.anyline.plugin.licenseplate.LicensePlateScanViewPlugin;
-import io.anyline.plugin.meter.MeterScanViewPlugin;
-import io.anyline.plugin.ocr.OcrScanViewPlugin;
 import io.anyline.view.AbstractBaseScanViewPlugin;
-import io.anyline.view.ParallelScanViewComposite;
-import io.anyline.view.SerialScanViewComposite;
 
 public abstract class AnylineBaseActivity extends AppCompatActivity
         implements CameraOpenListener, Thread.UncaughtExceptionHandler {
@@ -43,27 +32,65 @@ public abstract class AnylineBaseActivity extends AppCompatActivity
 
     protected String licenseKey;
     protected String configJson;
+    protected ScanConfig scanConfig;
+    protected boolean structuredResult;
+    // kept alive for the next scan instead of finishing after the final result, see ScanSession
+    protected boolean session;
+    // reused for all results of the scan, see ResultWriter
+    protected ResultWriter resultWriter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        ScanTrace.getScan().mark(ScanTrace.ACTIVITY_CREATED);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         ActionBar actionBar = getSupportActionBar();
         if(actionBar != null){
             actionBar.setDisplayHomeAsUpEnabled(true);
         }
 
-        licenseKey = getIntent().getStringExtra(Constants.EXTRA_LICENSE_KEY);
         configJson = getIntent().getStringExtra(Constants.EXTRA_CONFIG_JSON);
+        structuredResult = getIntent().getBooleanExtra(Constants.EXTRA_STRUCTURED_RESULT, false);
+        resultWriter = structuredResult ? new MapResultWriter() : new JsonResultWriter();
+        session = getIntent().getBooleanExtra(Constants.EXTRA_SESSION, false);
+        if (session) {
+            ScanSession.attach(this, configJson);
+        }
+        try {
+            // already compiled by the plugin, only parsed again if the process was recreated
+            scanConfig = ScanConfig.get(configJson);
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid config", e);
+            finishWithError(Constants.EXCEPTION_CONFIG);
+            return;
+        }
+        licenseKey = scanConfig.getLicenseKey();
 
         try {
-            AnylineSDK.init(licenseKey, this);
+            // no-op if the SDK was already initialized with this license (e.g. by METHOD_INIT_ANYLINE)
+            AnylineInitializer.initSdk(licenseKey, this);
+            ScanTrace.getScan().mark(ScanTrace.SDK_INITIALIZED);
         } catch (LicenseException e) {
             String errorCode = Constants.EXCEPTION_LICENSE;
             finishWithError(errorCode);
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        ScanSession.detach(this);
+    }
+
+    /**
+     * Takes the options of the next scan of a session, the config is the same (see {@link ScanSession}).
+     * Called once the results of the previous scan are reported.
+     */
+    protected void startNextScan(Intent intent) {
+        structuredResult = intent.getBooleanExtra(Constants.EXTRA_STRUCTURED_RESULT, false);
+        resultWriter = structuredResult ? new MapResultWriter() : new JsonResultWriter();
+    }
+
     /**
      * Always set this like this after the initAnyline: <br/>
      * scanView.getAnylineController().setWorkerThreadUncaughtExceptionHandler(this);<br/>
@@ -104,6 +131,7 @@ public abstract class AnylineBaseActivity extends AppCompatActivity
 
     @Override
     public void onCameraOpened(CameraController cameraController, int width, int height) {
+        ScanTrace.getScan().mark(ScanTrace.CAMERA_OPENED);
         Log.d(TAG, "Camera opened. Frame size " + width + " x " + height + ".");
     }
 
@@ -119,54 +147,25 @@ public abstract class AnylineBaseActivity extends AppCompatActivity
         super.onBackPressed();
     }
 
-    protected String jsonForOutline(List<PointF> pointList) {
-
-        JSONObject upLeft = new JSONObject();
-        JSONObject upRight = new JSONObject();
-        JSONObject downRight = new JSONObject();
-        JSONObject downLeft = new JSONObject();
-        JSONObject outline = new JSONObject();
-
-        try {
-            upLeft.put("x", pointList.get(0).x);
-            upLeft.put("y", pointList.get(0).y);
-
-            upRight.put("x", pointList.get(1).x);
-            upRight.put("y", pointList.get(1).y);
-
-            downRight.put("x", pointList.get(2).x);
-            downRight.put("y", pointList.get(2).y);
-
-            downLeft.put("x", pointList.get(3).x);
-            downLeft.put("y", pointList.get(3).y);
-
-            outline.put("upLeft", upLeft);
-            outline.put("upRight", upRight);
-            outline.put("downRight", downRight);
-            outline.put("downLeft", downLeft);
-
-
-        } catch (JSONException e) {
-            Log.d(TAG, e.toString());
-            e.printStackTrace();
-        }
-
-        return outline.toString();
+    /**
+     * Writes the outline the way it is put into the result, see {@link AnylinePluginHelper#writeOutline}.
+     */
+    protected void writeOutline(ResultWriter writer, List<PointF> pointList) throws JSONException {
+        AnylinePluginHelper.writeOutline(scanConfig, structuredResult, writer, pointList);
     }
 
-
     protected TextView getLabelView(Context context) {
 
         TextView labelView = new TextView(context);
 
-        try {
-            JSONObject jsonObject = new JSONObject(configJson);
-            JSONObject labelObject = jsonObject.getJSONObject("label");
-            labelView.setText(labelObject.getString("text"));
-            labelView.setTextColor(Color.parseColor("#" + labelObject.getString("color")));
-            labelView.setTextSize(Float.parseFloat(labelObject.getString("size")));
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (scanConfig.hasLabel()) {
+            labelView.setText(scanConfig.getLabelText());
+            if (scanConfig.getLabelColor() != null) {
+                labelView.setTextColor(scanConfig.getLabelColor());
+            }
+            if (scanConfig.getLabelSize() != null) {
+                labelView.setTextSize(scanConfig.getLabelSize());
+            }
         }
 
         return labelView;
@@ -202,83 +201,24 @@ public abstract class AnylineBaseActivity extends AppCompatActivity
         return lp;
     }
 
-    protected void setFocusConfig(JSONObject json, CameraConfig camConfig) throws JSONException {
-
-        if (json.has("focus")) {
-            JSONObject focusConfig = json.getJSONObject("focus");
-
-            // change default focus mode to auto (works better if cutout is not in the center)
-            switch (focusConfig.getString("mode")) {
-                case ("AUTO"):
-                default:
-                    camConfig.setFocusMode(CameraFeatures.FocusMode.AUTO);
-                    break;
-                case ("MACRO"):
-                    camConfig.setFocusMode(CameraFeatures.FocusMode.MACRO);
-                    break;
-                case ("CONTINUOUS_PICTURE"):
-                    camConfig.setFocusMode(CameraFeatures.FocusMode.CONTINUOUS_PICTURE);
-                    break;
-                case ("CONTINUOUS_VIDEO"):
-                    camConfig.setFocusMode(CameraFeatures.FocusMode.CONTINUOUS_VIDEO);
-                    break;
-                case ("EDOF"):
-                    camConfig.setFocusMode(CameraFeatures.FocusMode.EDOF);
-                    break;
-                case ("FIXED"):
-                    camConfig.setFocusMode(CameraFeatures.FocusMode.FIXED);
-                    break;
-                case ("INFINITY"):
-                    camConfig.setFocusMode(CameraFeatures.FocusMode.INFINITY);
-                    break;
-                case ("OFF"):
-                    camConfig.setFocusMode(CameraFeatures.FocusMode.OFF);
-                    break;
-            }
-            // autofocus is called in this interval (8000 is default)
-            if (focusConfig.has("interval")) {
-                camConfig.setAutoFocusInterval(focusConfig.getInt("interval"));
-            }
-            // call autofocus if view is touched (true is default)
-            if (focusConfig.has("touchEnabled")) {
-                camConfig.setFocusOnTouchEnabled(focusConfig.getBoolean("touchEnabled"));
-            }
-            // focus where the cutout is (true is default)
-            if (focusConfig.has("regionEnabled")) {
-                camConfig.setFocusRegionEnabled(focusConfig.getBoolean("regionEnabled"));
-            }
-            // automatic exposure calculation based on where the cutout is (true is default)
-            if (focusConfig.has("autoExposureRegionEnabled")) {
-                camConfig.setAutoExposureRegionEnabled(focusConfig.getBoolean("autoExposureRegionEnabled"));
-            }
-        }
+    protected void setFocusConfig(CameraConfig camConfig) {
+        scanConfig.applyFocusConfig(camConfig);
     }
 
-    protected void setResult(AbstractBaseScanViewPlugin scanViewPlugin, JSONObject jsonResult) {
-        Boolean isCancelOnResult = true;
-        if (scanViewPlugin instanceof MeterScanViewPlugin) {
-            isCancelOnResult = ((MeterScanViewPlugin) scanViewPlugin).getScanViewPluginConfig().isCancelOnResult();
-        } else if (scanViewPlugin instanceof BarcodeScanViewPlugin) {
-            isCancelOnResult = ((BarcodeScanViewPlugin) scanViewPlugin).getScanViewPluginConfig().isCancelOnResult();
-        } else if (scanViewPlugin instanceof IdScanViewPlugin) {
-            isCancelOnResult = ((IdScanViewPlugin) scanViewPlugin).getScanViewPluginConfig().isCancelOnResult();
-        } else if (scanViewPlugin instanceof LicensePlateScanViewPlugin) {
-            isCancelOnResult = ((LicensePlateScanViewPlugin) scanViewPlugin).getScanViewPluginConfig().isCancelOnResult();
-        } else if (scanViewPlugin instanceof OcrScanViewPlugin) {
-            isCancelOnResult = ((OcrScanViewPlugin) scanViewPlugin).getScanViewPluginConfig().isCancelOnResult();
-        } else if (scanViewPlugin instanceof SerialScanViewComposite) {
-            isCancelOnResult = ((SerialScanViewComposite) scanViewPlugin).getScanViewPluginConfig().isCancelOnResult();
-        } else if (scanViewPlugin instanceof ParallelScanViewComposite) {
-            isCancelOnResult = ((ParallelScanViewComposite) scanViewPlugin).getScanViewPluginConfig().isCancelOnResult();
-        }
-
-        if (scanViewPlugin != null && isCancelOnResult) {
-//          if(scanViewPlugin != null && scanViewPlugin.getScanViewPluginConfig().isCancelOnResult()){
-            ResultReporter.onResult(jsonResult, true);
-            setResult(Constants.RESULT_OK);
-            finish();
+    /**
+     * Reports the result finished in the {@link #resultWriter}.
+     */
+    protected void setResult(AbstractBaseScanViewPlugin scanViewPlugin, ResultWriter writer) {
+        // cancelOnResult of the view plugin or composite, read once when the config is compiled
+        if (scanViewPlugin != null && scanConfig.isCancelOnResult()) {
+            ResultReporter.onResult(writer.result(), true);
+            // a session stays alive with its camera, the plugin brings flutter back to the front
+            if (!session) {
+                setResult(Constants.RESULT_OK);
+                finish();
+            }
         } else {
-            ResultReporter.onResult(jsonResult, false);
+            ResultReporter.onResult(writer.result(), false);
         }
 
     }
@@ -0,0 +1,34 @@
+package io.anyline.flutter;
+
+import android.content.Context;
+
+import at.nineyards.anyline.core.LicenseException;
+import io.anyline.AnylineSDK;
+
+/**
+ * Keeps track of the license the Anyline SDK was initialized with, so the license validation only has to be done
+ * once per process (either by {@link Constants#METHOD_INIT_ANYLINE} or by the first scan activity).
+ */
+public class AnylineInitializer {
+
+    private static String initializedLicenseKey;
+
+    /**
+     * Initializes the Anyline SDK with the given license key, unless it was already initialized with the same key.
+     *
+     * @param licenseKey the license key
+     * @param context    any context, only the application context is retained
+     * @throws LicenseException if the license is invalid
+     */
+    public static synchronized void initSdk(String licenseKey, Context context) throws LicenseException {
+        if (licenseKey != null && licenseKey.equals(initializedLicenseKey)) {
+            return;
+        }
+        AnylineSDK.init(licenseKey, context.getApplicationContext());
+        initializedLicenseKey = licenseKey;
+    }
+
+    public static synchronized boolean isInitialized(String licenseKey) {
+        return licenseKey != null && licenseKey.equals(initializedLicenseKey);
+    }
+}
@@ -3,55 +3,79 @@ package io.anyline.flutter;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import at.nineyards.anyline.core.LicenseException;
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
 import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.PluginRegistry;
 import io.flutter.plugin.common.PluginRegistry.Registrar;
+import io.flutter.plugin.platform.PlatformViewRegistry;
 
 /**
  * AnylinePlugin
  */
 public class AnylinePlugin implements FlutterPlugin, MethodCallHandler, PluginRegistry.ActivityResultListener, ResultReporter.OnResultListener, ActivityAware {
 
+    // license validation, asset copying and waiting for images must not block the platform thread
+    private static final ExecutorService backgroundExecutor = Executors.newCachedThreadPool();
+
     private MethodChannel channel;
+    private EventChannel resultChannel;
+    private final ResultStreamHandler resultStream = new ResultStreamHandler();
+    private AnylineScanViewFactory scanViewFactory;
     private Context applicationContext;
 
-    private String licenseKey;
     private String configJson;
-    private JSONObject configObject;
-    private JSONObject options;
+    private boolean structuredResult;
+    private boolean session;
     private Activity activity;
     private MethodChannel.Result result;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     /**
      * Plugin registration
      */
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
-        onAttachedToEngine(flutterPluginBinding.getApplicationContext(), flutterPluginBinding.getBinaryMessenger());
+        onAttachedToEngine(flutterPluginBinding.getApplicationContext(), flutterPluginBinding.getBinaryMessenger(),
+                flutterPluginBinding.getPlatformViewRegistry());
     }
 
     public static void registerWith(Registrar registrar) {
         final AnylinePlugin instance = new AnylinePlugin(registrar.activity());
-        instance.onAttachedToEngine(registrar.context(), registrar.messenger());
+        instance.onAttachedToEngine(registrar.context(), registrar.messenger(), registrar.platformViewRegistry());
     }
 
-    private void onAttachedToEngine(Context applicationContext, BinaryMessenger messenger) {
+    private void onAttachedToEngine(Context applicationContext, BinaryMessenger messenger,
+                                    PlatformViewRegistry platformViewRegistry) {
         this.applicationContext = applicationContext;
         channel = new MethodChannel(messenger, "anyline_plugin");
         channel.setMethodCallHandler(this);
+        resultChannel = new EventChannel(messenger, Constants.EVENT_CHANNEL_RESULTS);
+        resultChannel.setStreamHandler(resultStream);
+        scanViewFactory = new AnylineScanViewFactory(messenger);
+        scanViewFactory.setActivity(activity);
+        platformViewRegistry.registerViewFactory(Constants.VIEW_TYPE_SCAN_VIEW, scanViewFactory);
     }
 
     private AnylinePlugin(Activity activity) {
@@ -64,81 +88,181 @@ public class AnylinePlugin implements FlutterPlugin, MethodCallHandler, PluginRe
 
     @Override
     public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
-        this.result = result;
         if (call.method.equals(Constants.METHOD_GET_SDK_VERSION)) {
             result.success(at.nineyards.anyline.BuildConfig.VERSION_NAME);
+        } else if (call.method.equals(Constants.METHOD_INIT_ANYLINE)) {
+            String initConfigJson = call.argument(Constants.EXTRA_CONFIG_JSON);
+            initAnyline(initConfigJson, result);
+        } else if (call.method.equals(Constants.METHOD_GET_RESULT_IMAGES)) {
+            String resultId = call.argument(Constants.EXTRA_RESULT_ID);
+            getResultImages(resultId, result);
+        } else if (call.method.equals(Constants.METHOD_PIN_RESULT_IMAGES)) {
+            List<String> imagePaths = call.argument(Constants.EXTRA_IMAGE_PATHS);
+            ResultImageCache.pin(imagePaths);
+            result.success(null);
+        } else if (call.method.equals(Constants.METHOD_RELEASE_RESULT_IMAGES)) {
+            List<String> imagePaths = call.argument(Constants.EXTRA_IMAGE_PATHS);
+            releaseResultImages(imagePaths, result);
+        } else if (call.method.equals(Constants.METHOD_GET_IMAGE)) {
+            String imageHandle = call.argument(Constants.EXTRA_IMAGE_HANDLE);
+            Map<String, Object> imageOutput = call.argument(Constants.EXTRA_IMAGE_OUTPUT);
+            getImage(imageHandle, imageOutput, result);
+        } else if (call.method.equals(Constants.METHOD_RELEASE_IMAGE)) {
+            ImageHandles.release((String) call.argument(Constants.EXTRA_IMAGE_HANDLE));
+            result.success(null);
+        } else if (call.method.equals(Constants.METHOD_REQUEST_RESULTS)) {
+            Number demand = call.argument(Constants.EXTRA_DEMAND);
+            resultStream.request(demand != null ? demand.longValue() : 0);
+            result.success(null);
+        } else if (call.method.equals(Constants.METHOD_CLOSE_SESSION)) {
+            ScanSession.close();
+            result.success(null);
+        } else if (call.method.equals(Constants.METHOD_GET_SCAN_TRACE)) {
+            result.success(ScanTrace.getScan().getSpans());
         } else if (call.method.equals(Constants.METHOD_START_ANYLINE)) {
+            ScanTrace.startScan();
+            this.result = result;
             this.configJson = call.argument(Constants.EXTRA_CONFIG_JSON);
+            this.structuredResult = Boolean.TRUE.equals(call.argument(Constants.EXTRA_STRUCTURED_RESULT));
+            this.session = Boolean.TRUE.equals(call.argument(Constants.EXTRA_SESSION));
             scanAnyline4();
         } else {
             result.notImplemented();
         }
     }
 
-    private void scanAnyline4() {
-        try {
-            configObject = new JSONObject(this.configJson);
-            JSONObject options = configObject.getJSONObject("options");
-            if (options.has("viewPlugin")) {
-                JSONObject viewPlugin = options.getJSONObject("viewPlugin");
-                if (viewPlugin != null && viewPlugin.has("plugin")) {
-                    JSONObject plugin = viewPlugin.getJSONObject("plugin");
-                    if (plugin != null && plugin.has("documentPlugin")) {
-                        scan(Document4Activity.class);
-                    } else {
-                        scan(Anyline4Activity.class);
-                    }
-                } else {
-                    returnError(Constants.EXCEPTION_CONFIG, "No Plugin in config. Please check your configuration.");
+    /**
+     * Does the expensive parts of starting a scan ahead of time on a background thread: license validation,
+     * config parsing and copying the OCR traineddata. A following {@link Constants#METHOD_START_ANYLINE} with the
+     * same license and languages then skips that work.
+     */
+    private void initAnyline(final String initConfigJson, final Result initResult) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ScanConfig scanConfig = ScanConfig.get(initConfigJson);
+                    AnylineInitializer.initSdk(scanConfig.getLicenseKey(), applicationContext);
+                    TraineddataInstaller.install(scanConfig.getOcrLanguageAssets(), applicationContext);
+
+                    postSuccess(initResult, null);
+                } catch (JSONException e) {
+                    postError(initResult, Constants.EXCEPTION_CONFIG, "JSON ERROR: " + e.getMessage());
+                } catch (LicenseException e) {
+                    postError(initResult, Constants.EXCEPTION_LICENSE, e.getMessage());
+                } catch (IOException e) {
+                    postError(initResult, Constants.EXCEPTION_CONFIG, e.getMessage());
                 }
-            } else if (options.has("serialViewPluginComposite") || options.has("parallelViewPluginComposite")) {
-                scan(Anyline4Activity.class);
-            } else {
-                returnError(Constants.EXCEPTION_CONFIG, "No ViewPlugin in config. Please check your configuration.");
             }
-        } catch (JSONException e) {
-            e.printStackTrace();
-            returnError(Constants.EXCEPTION_CONFIG);
-        }
+        });
     }
 
-    private void scan(Class<?> activityToStart) {
+    /**
+     * Replies with the image paths (or bytes) of a result reported with deferred images, as soon as they are encoded.
+     */
+    private void getResultImages(final String resultId, final Result imagesResult) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Object> images = ImageEncoder.awaitResultImages(resultId);
+                if (images != null) {
+                    postSuccess(imagesResult, images);
+                } else {
+                    postError(imagesResult, Constants.EXCEPTION_DEFAULT, "No pending images for result " + resultId);
+                }
+            }
+        });
+    }
 
-        Intent intent = new Intent(activity, activityToStart);
+    private void releaseResultImages(final List<String> imagePaths, final Result releaseResult) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ResultImageCache.release(imagePaths);
+                postSuccess(releaseResult, null);
+            }
+        });
+    }
 
-        try {
-            configObject = new JSONObject(this.configJson);
+    /**
+     * Encodes the image of a lazy image handle with the given imageOutput keys (see {@link ImageOutputPolicy}) and
+     * replies with its path or bytes.
+     */
+    private void getImage(final String imageHandle, final Map<String, Object> imageOutput, final Result imageResult) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ImageOutputPolicy policy = new ImageOutputPolicy(imageOutput != null ? new JSONObject(imageOutput) : null);
+                Object image = ImageHandles.encode(applicationContext, imageHandle, policy);
+                if (image != null) {
+                    postSuccess(imageResult, image);
+                } else {
+                    postError(imageResult, Constants.EXCEPTION_DEFAULT, "No image for handle " + imageHandle);
+                }
+            }
+        });
+    }
 
-            // Hacky -> force cancelOnResult = true
-            options = configObject.getJSONObject("options");
-            options.put("cancelOnResult", true);
+    private void postSuccess(final Result callResult, final Object value) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callResult.success(value);
+            }
+        });
+    }
 
-            licenseKey = configObject.get("license").toString();
-            if (configObject.has("nativeBarcodeEnabled")) {
-                intent.putExtra(Constants.EXTRA_ENABLE_BARCODE_SCANNING, configObject.getBoolean("nativeBarcodeEnabled"));
+    private void postError(final Result callResult, final String errorCode, final String errorMessage) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callResult.error(errorCode, errorMessage, null);
             }
+        });
+    }
 
+    private void scanAnyline4() {
+        ScanConfig scanConfig;
+        try {
+            scanConfig = ScanConfig.get(this.configJson);
         } catch (JSONException e) {
-            returnError(Constants.EXCEPTION_CONFIG, "JSON ERROR: " + e.getMessage());
+            e.printStackTrace();
+            returnError(Constants.EXCEPTION_CONFIG, e.getMessage());
+            return;
+        }
+        ScanTrace.getScan().mark(ScanTrace.CONFIG_PARSED);
+        ScanTrace.getScan().setLogEnabled(scanConfig.isScanTraceLog());
+        ResultImageCache.setBudget(scanConfig.getImageCacheMaxBytes(), scanConfig.getImageCacheMaxFiles());
+
+        if (scanConfig.getPluginKind() == ScanConfig.PluginKind.DOCUMENT) {
+            // the document activity has its own result flow, it is not kept as session
+            session = false;
+            scan(Document4Activity.class, scanConfig);
+        } else {
+            scan(Anyline4Activity.class, scanConfig);
         }
+    }
 
-        intent.putExtra(Constants.EXTRA_LICENSE_KEY, licenseKey);
-        intent.putExtra(Constants.EXTRA_CONFIG_JSON, options.toString());
+    private void scan(Class<?> activityToStart, ScanConfig scanConfig) {
 
-        // Check if OCR
-        if (configObject.has("ocr")) {
-            try {
-                intent.putExtra(Constants.EXTRA_OCR_CONFIG_JSON, configObject.get("ocr").toString());
-            } catch (JSONException e) {
-                returnError(Constants.EXCEPTION_CONFIG, e.getMessage());
-            }
-        }
+        Intent intent = new Intent(activity, activityToStart);
+
+        // the activity looks the compiled config up by the config json, it is only parsed again if the process died
+        intent.putExtra(Constants.EXTRA_CONFIG_JSON, this.configJson);
+        intent.putExtra(Constants.EXTRA_LICENSE_KEY, scanConfig.getLicenseKey());
+        intent.putExtra(Constants.EXTRA_ENABLE_BARCODE_SCANNING, scanConfig.isNativeBarcodeEnabled());
+        intent.putExtra(Constants.EXTRA_STRUCTURED_RESULT, structuredResult);
+        intent.putExtra(Constants.EXTRA_SESSION, session);
 
-        if (null != null) {
-            intent.putExtra(Constants.EXTRA_SCAN_MODE, (String) null);
-        }
         ResultReporter.setListener(this);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        if (session && ScanSession.isOpen(this.configJson)) {
+            // the activity of the session is brought to the front with its camera, see ScanSession
+            intent.addFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT);
+        } else {
+            // a session with another config
+            ScanSession.close();
+        }
 
         activity.startActivityForResult(intent, Constants.REQUEST_ANYLINE_4, intent.getExtras());
 
@@ -146,35 +270,64 @@ public class AnylinePlugin implements FlutterPlugin, MethodCallHandler, PluginRe
 
     @Override
     public void onResult(Object result, boolean isFinalResult) {
+        Object scanResult = structuredResult ? StructuredResult.toStandardValue(result) : result.toString();
+        // every result goes to the result stream, the final one also completes the METHOD_START_ANYLINE call
+        resultStream.sendResult(scanResult);
+        ScanTrace.getScan().mark(ScanTrace.RESULT_RETURNED);
         if (isFinalResult) {
-            returnSuccess(result.toString());
+            ScanTrace.getScan().finish();
+            resultStream.end();
+            returnSuccess(scanResult);
+            if (session) {
+                showFlutter();
+            }
         }
     }
 
+    // the activity of a session is not finished after the final result, flutter is brought to the front instead
+    private void showFlutter() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (activity != null) {
+                    Intent intent = new Intent(activity, activity.getClass());
+                    intent.addFlags(Intent.FLAG_ACTIVITY_REORDER_TO_FRONT);
+                    activity.startActivity(intent);
+                }
+            }
+        });
+    }
+
     @Override
     public void onError(String error) {
+        ScanTrace.getScan().finish();
+        resultStream.sendErrorAndEnd(Constants.EXCEPTION_DEFAULT, error);
         returnDefaultError(error);
     }
 
     @Override
     public void onCancel() {
+        ScanTrace.getScan().finish();
+        resultStream.end();
         returnDefaultError("Anyline was cancelled");
     }
 
+    // the replies are posted, so they reach flutter after the events of the result stream sent before them
+
     private void returnError(String errorCode) {
-        result.error(errorCode, null, null);
+        postError(result, errorCode, null);
     }
 
     private void returnError(String errorCode, String errorMessage) {
-        result.error(errorCode, errorMessage, null);
+        postError(result, errorCode, errorMessage);
     }
 
     private void returnDefaultError(String errorMessage) {
-        result.error(Constants.EXCEPTION_DEFAULT, errorMessage, null);
+        postError(result, Constants.EXCEPTION_DEFAULT, errorMessage);
     }
 
-    private void returnSuccess(String scanResult) {
-        result.success(scanResult);
+    private void returnSuccess(Object scanResult) {
+        postSuccess(result, scanResult);
     }
 
     @Override
@@ -185,11 +338,13 @@ public class AnylinePlugin implements FlutterPlugin, MethodCallHandler, PluginRe
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
         channel.setMethodCallHandler(null);
+        resultChannel.setStreamHandler(null);
     }
 
     @Override
     public void onAttachedToActivity(@NonNull ActivityPluginBinding binding) {
         this.activity = binding.getActivity();
+        scanViewFactory.setActivity(activity);
     }
 
     @Override
@@ -204,6 +359,6 @@ public class AnylinePlugin implements FlutterPlugin, MethodCallHandler, PluginRe
 
     @Override
     public void onDetachedFromActivity() {
-
+        scanViewFactory.setActivity(null);
     }
 }
@@ -1,28 +1,27 @@
 package io.anyline.flutter;
 
 import android.content.Context;
+import android.graphics.PointF;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.google.android.libraries.barhopper.Barcode;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 
-import io.anyline.camera.NativeBarcodeResultListener;
+import io.anyline.models.AnylineImage;
 import io.anyline.plugin.ScanResult;
 import io.anyline.plugin.barcode.BarcodeFormat;
 import io.anyline.plugin.meter.MeterScanMode;
-import io.anyline.util.AssetUtil;
-import io.anyline.util.TempFileUtil;
 import io.anyline.view.ScanView;
 
 public class AnylinePluginHelper {
@@ -30,189 +29,226 @@ public class AnylinePluginHelper {
     private static final String TAG = AnylinePluginHelper.class.getSimpleName();
 
     private static Toast notificationToast;
-    private static boolean nativeBarcodeEnabled = false;
-    private static List<com.google.mlkit.vision.barcode.Barcode> finalBarcodeList;
-
-    public static JSONObject setLanguages(JSONObject json, Context context) {
-        if (json.has("viewPlugin")) {
-            try {
-                JSONObject viewPlugin = json.getJSONObject("viewPlugin");
-                if (viewPlugin != null && viewPlugin.has("plugin")) {
-
-                    JSONObject plugin = viewPlugin.getJSONObject("plugin");
-                    if (plugin != null && plugin.has("ocrPlugin")) {
-                        JSONObject ocrScanPlugin = plugin.getJSONObject("ocrPlugin");
-                        {
-                            JSONArray tesseractArray = ocrScanPlugin.optJSONArray("languages");
-                            if (tesseractArray == null) {
-                                if (ocrScanPlugin.has("ocrConfig")) {
-                                    JSONObject ocrConfig = ocrScanPlugin.getJSONObject("ocrConfig");
-                                    tesseractArray = ocrConfig.optJSONArray("languages");
-                                }
-                            }
-                            JSONArray newLanguagesArray = new JSONArray();
-                            if (tesseractArray != null) {
-                                String[] languages = new String[tesseractArray.length()];
-                                for (int i = 0; i < languages.length; i++) {
-                                    long start = System.currentTimeMillis();
-
-                                    String traineddataFilePath = tesseractArray.getString(i);
-                                    String fileExtension = traineddataFilePath
-                                            .substring(traineddataFilePath.lastIndexOf(".") + 1);
-
-                                    // Check where to copy the training files
-                                    File dirToCopy = new File(context.getFilesDir(),
-                                            "anyline/module_anyline_ocr/tessdata/");
-                                    if (Objects.equals(fileExtension, "any")) {
-                                        dirToCopy = new File(context.getFilesDir(),
-                                                "anyline/module_anyline_ocr/trained_models/");
-                                    }
-
-                                    int lastFileSeparatorIndex = traineddataFilePath.lastIndexOf(File.separator);
-                                    int lastDotIndex = traineddataFilePath.lastIndexOf(".");
-                                    if (lastDotIndex > lastFileSeparatorIndex) {
-                                        // start after the "/" or with 0 if no fileseperator was found
-                                        languages[i] = traineddataFilePath.substring(lastFileSeparatorIndex + 1);
-                                    } else {
-                                        // maybe it should just fail here, case propably not useful
-                                        languages[i] = traineddataFilePath.substring(lastFileSeparatorIndex + 1);
-                                    }
-                                    newLanguagesArray.put(languages[i]);
-                                    Log.d("languages", languages[i]);
-                                    AssetUtil.copyAssetFileWithoutPath(context, traineddataFilePath, dirToCopy, false);
-                                    Log.v(TAG, "Copy traineddata duration: " + (System.currentTimeMillis() - start));
-                                }
-                                ocrScanPlugin.put("languages", newLanguagesArray);
-
-                            } else {
-                                Log.d(TAG, "No Training Data");
-                            }
-                        }
-                    }
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    // per thread, the parts of a composite result are serialized in parallel
+    private static final ThreadLocal<JsonResultWriter> outlineWriter = new ThreadLocal<JsonResultWriter>() {
+        @Override
+        protected JsonResultWriter initialValue() {
+            return new JsonResultWriter();
         }
-        return json;
-    }
-
-    public static void setNativeBarcodeMode(JSONObject jsonObject, ScanView anylineScanView) {
-        boolean nativeBarcodeEnabledJson = false;
-        if (jsonObject.has("nativeBarcodeEnabled")) {
-            try {
-                nativeBarcodeEnabledJson = jsonObject.getBoolean("nativeBarcodeEnabled");
-                if (nativeBarcodeEnabledJson) {
-                    enableNativeBarcode(anylineScanView, null);
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
+    };
+
+    /**
+     * The fields {@link #jsonHelper} puts into every result, next to the ones of the result type.
+     */
+    public static final Set<String> COMMON_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "imagePath", "fullImagePath", "imageBytes", "fullImageBytes", "imageHandle", "fullImageHandle",
+            "resultId", "outline", "confidence", "detectedBarcodes")));
+
+    /**
+     * Starts the native barcode detection of the scan view if the config asks for it.
+     *
+     * @return the running detection with the barcodes of the scan view, to be stopped with it, or null
+     */
+    public static NativeBarcodeDetection startNativeBarcodeDetection(ScanConfig scanConfig,
+                                                                     ScanView anylineScanView) {
+        if (!scanConfig.isNativeBarcodeEnabled()) {
+            return null;
         }
-        nativeBarcodeEnabled = nativeBarcodeEnabledJson;
+        NativeBarcodeDetection detection = new NativeBarcodeDetection(anylineScanView,
+                scanConfig.getNativeBarcodeFormats(),
+                new FrameGate(scanConfig.getNativeBarcodeFrameInterval(), scanConfig.getNativeBarcodeMaxRate()),
+                scanConfig.getNativeBarcodeMinFrames());
+        detection.start();
+        return detection;
     }
 
-    public static boolean getNativeBarcodeMode() {
-        return nativeBarcodeEnabled;
-    }
-
-    public static void clearFinalBarcodeList() {
-        finalBarcodeList = null;
-    }
-
-    public static JSONArray arrayOfDetectedBarcodes() {
-
-        if (nativeBarcodeEnabled) {
-            // List<FirebaseVisionBarcode> finalBarcodeList = new ArrayList<>();
-            //finalBarcodeList = AnylinePluginHelper.getNativeBarcodeList();
-            final JSONArray jsonArray = new JSONArray();
-            if (finalBarcodeList != null) {
-                for (int i = 0; i < finalBarcodeList.size(); i++) {
-                    jsonArray.put(AnylinePluginHelper.wrapBarcodeInJson(finalBarcodeList.get(i)));
-                }
-            }
-            return jsonArray;
+    /**
+     * Writes the native barcodes as "detectedBarcodes", if any.
+     */
+    public static void writeDetectedBarcodes(List<BarcodeAccumulator.DetectedBarcode> barcodes,
+                                             ResultWriter writer) {
+        if (barcodes.isEmpty()) {
+            return;
         }
-        return null;
+        writer.name("detectedBarcodes").beginArray();
+        for (BarcodeAccumulator.DetectedBarcode b : barcodes) {
+            writer.beginObject()
+                    .name("value").value(b.getValue())
+                    .name("format").value(b.getFormat())
+                    .name("frames").value(b.getFrames())
+                    .endObject();
+        }
+        writer.endArray();
     }
 
-    public static JSONObject jsonHelper(Anyline4Activity activity, ScanResult<?> scanResult, JSONObject jsonObject) {
+    /**
+     * Writes the images, outline, confidence and native barcodes of the result into the open result object.
+     *
+     * @param structuredResult if the result is transferred as structured data, see {@link #writeOutline}
+     * @param images           the images of the result copied when it was found, taken over and released here
+     * @return if images were encoded into the result, see {@link #putImages}
+     */
+    public static boolean jsonHelper(Context context, ScanConfig scanConfig, boolean structuredResult,
+                                  ScanResult<?> scanResult, ResultImages images,
+                                  List<BarcodeAccumulator.DetectedBarcode> barcodes, ResultWriter writer) {
+        // the images are encoded in parallel in the background (or kept as handles), only the ones the config asks for
+        boolean imagesEncoded = putImages(context, scanConfig, images.takeCutoutImage(), images.takeFullImage(), 90,
+                true, writer);
         try {
-            File imageFile = TempFileUtil.createTempFileCheckCache(activity, UUID.randomUUID().toString(), ".jpg");
-            scanResult.getCutoutImage().save(imageFile, 90);
-            jsonObject.put("imagePath", imageFile.getAbsolutePath());
-
-            File imageFileFull = TempFileUtil.createTempFileCheckCache(activity, UUID.randomUUID().toString(), ".jpg");
-            scanResult.getFullImage().save(imageFileFull, 90);
-            jsonObject.put("fullImagePath", imageFileFull.getAbsolutePath());
 
-            if (scanResult.getOutline() != null) {
-                jsonObject.put("outline", activity.jsonForOutline(scanResult.getOutline()));
+            // the fields the config does not ask for are not computed
+            if (scanResult.getOutline() != null && writer.isWanted("outline")) {
+                writer.name("outline");
+                writeOutline(scanConfig, structuredResult, writer, scanResult.getOutline());
             }
             if (scanResult.getConfidence() != null) {
-                jsonObject.put("confidence", scanResult.getConfidence());
-
-                if (nativeBarcodeEnabled) {
-                    JSONArray barcodeArray = arrayOfDetectedBarcodes();
+                writer.name("confidence").json(scanResult.getConfidence());
 
-                    if (barcodeArray.length() > 0) {
-                        jsonObject.put("detectedBarcodes", barcodeArray);
-                    }
+                if (scanConfig.isNativeBarcodeEnabled() && writer.isWanted("detectedBarcodes")) {
+                    writeDetectedBarcodes(barcodes, writer);
                 }
             }
-        } catch (IOException e) {
-            Log.e(TAG, "Image file could not be saved.", e);
-
         } catch (JSONException jsonException) {
             // should not be possible
             Log.e(TAG, "Error while putting image path to json.", jsonException);
         }
-        return jsonObject;
+        return imagesEncoded;
     }
 
-    public static JSONObject wrapBarcodeInJson(com.google.mlkit.vision.barcode.Barcode b) {
-        JSONObject json = new JSONObject();
-
-        try {
-            json.put("value", b.getDisplayValue());
-            json.put("format", findValidFormatForReference(b.getFormat()));
-        } catch (JSONException jsonException) {
-            // should not be possible
-            Log.e(TAG, "Error while putting image path to json.", jsonException);
+    /**
+     * Writes the outline the way it is put into the result: as flat list of numbers if the config asks for it
+     * (see {@link ScanConfig#isFlatOutline()}), as nested object for structured results (so flutter receives numbers),
+     * and as json string otherwise.
+     */
+    public static void writeOutline(ScanConfig scanConfig, boolean structuredResult, ResultWriter writer,
+                                    List<PointF> pointList) throws JSONException {
+        if (scanConfig.isFlatOutline()) {
+            writer.value(flatOutline(pointList));
+        } else if (structuredResult) {
+            writeOutlineObject(writer, pointList);
+        } else {
+            JsonResultWriter outlineWriter = AnylinePluginHelper.outlineWriter.get();
+            outlineWriter.reset();
+            writeOutlineObject(outlineWriter, pointList);
+            writer.value((String) outlineWriter.result());
         }
-        return json;
     }
 
-    private static void setNativeBarcodeList(List<com.google.mlkit.vision.barcode.Barcode> barcodes) {
-        final List<com.google.mlkit.vision.barcode.Barcode> barcodeList = new ArrayList<>();
-        final List<String> barcodesDisplayedVal = new ArrayList<>();
-
-        if (barcodeList.size() == 0) {
-            barcodeList.add(barcodes.get(0));
+    // upLeft, upRight, downRight, downLeft as x, y
+    private static double[] flatOutline(List<PointF> pointList) {
+        double[] outline = new double[8];
+        for (int i = 0; i < 4; i++) {
+            PointF point = pointList.get(i);
+            outline[2 * i] = point.x;
+            outline[2 * i + 1] = point.y;
         }
+        return outline;
+    }
 
-        if (barcodes != null && barcodes.size() > 0) {
-            barcodesDisplayedVal.add(barcodes.get(0).getDisplayValue());
+    private static void writeOutlineObject(ResultWriter writer, List<PointF> pointList) throws JSONException {
+        writer.beginObject();
+        writePoint(writer, "upLeft", pointList.get(0));
+        writePoint(writer, "upRight", pointList.get(1));
+        writePoint(writer, "downRight", pointList.get(2));
+        writePoint(writer, "downLeft", pointList.get(3));
+        writer.endObject();
+    }
 
-            for (int i = 0; i < barcodes.size(); i++) {
-                if (!barcodesDisplayedVal.contains(barcodes.get(i).getDisplayValue())) {
-                    barcodeList.add(barcodes.get(i));
-                }
+    private static void writePoint(ResultWriter writer, String name, PointF point) throws JSONException {
+        writer.name(name).beginObject()
+                .name("x").value(point.x)
+                .name("y").value(point.y)
+                .endObject();
+    }
+
+    /**
+     * Puts the images the config asks for into the result: encoded right away, deferred or as lazy handles.
+     *
+     * @param cutoutImage    the cutout image, or null
+     * @param fullImage      the full image, or null
+     * @param defaultQuality the quality if the config does not define one
+     * @param release        if the images are released once they are encoded, skipped or their handles released
+     * @return if images were encoded and put into the result, for {@link ScanTrace#IMAGES_ENCODED}
+     */
+    public static boolean putImages(Context context, ScanConfig scanConfig, AnylineImage cutoutImage,
+                                 AnylineImage fullImage, int defaultQuality, boolean release, ResultWriter writer) {
+        ImageOutputPolicy imageOutput = scanConfig.getImageOutput();
+        boolean lazyImages = scanConfig.isLazyImages();
+        if (cutoutImage != null && !(imageOutput.isCutoutImage()
+                && writer.isWanted(lazyImages ? "imageHandle" : imageOutput.getCutoutImageKey()))) {
+            if (release) {
+                cutoutImage.release();
+            }
+            cutoutImage = null;
+        }
+        if (fullImage != null && !(imageOutput.isFullImage()
+                && writer.isWanted(lazyImages ? "fullImageHandle" : imageOutput.getFullImageKey()))) {
+            if (release) {
+                fullImage.release();
             }
+            fullImage = null;
+        }
 
+        if (lazyImages) {
+            putImageHandle("imageHandle", cutoutImage, release, scanConfig, writer);
+            putImageHandle("fullImageHandle", fullImage, release, scanConfig, writer);
+            return false;
         }
 
-        finalBarcodeList = barcodeList;
+        Map<String, Future<Object>> images = new LinkedHashMap<>();
+        if (cutoutImage != null) {
+            images.put(imageOutput.getCutoutImageKey(),
+                    ImageEncoder.encode(context, cutoutImage, imageOutput, defaultQuality, release));
+        }
+        if (fullImage != null) {
+            images.put(imageOutput.getFullImageKey(),
+                    ImageEncoder.encode(context, fullImage, imageOutput, defaultQuality, release));
+        }
+        return putEncodedImages(scanConfig, images, writer);
+    }
+
+    private static void putImageHandle(String name, AnylineImage image, boolean release, ScanConfig scanConfig,
+                                       ResultWriter writer) {
+        if (image == null) {
+            return;
+        }
+        String handle = ImageHandles.retain(image, release, scanConfig.getImageHandleTimeout());
+        if (handle != null) {
+            writer.name(name).value(handle);
+        }
+    }
 
+    /**
+     * Puts the image paths (or bytes) into the result once the images are encoded, or only a resultId to fetch them
+     * with later if the config defers the images.
+     */
+    private static boolean putEncodedImages(ScanConfig scanConfig, Map<String, Future<Object>> images,
+                                            ResultWriter writer) {
+        if (images.isEmpty()) {
+            return false;
+        }
+        if (scanConfig.isDeferredImages()) {
+            writer.name("resultId").value(ImageEncoder.deferResultImages(images));
+            return false;
+        }
+        for (Map.Entry<String, Future<Object>> image : images.entrySet()) {
+            putEncodedImage(image.getKey(), ImageEncoder.getImage(image.getValue()), writer);
+        }
+        return true;
     }
 
-    private static List<com.google.mlkit.vision.barcode.Barcode> getNativeBarcodeList() {
-        return finalBarcodeList;
+    /**
+     * Puts the path or the bytes of an encoded image into the result, nothing if it could not be encoded.
+     */
+    public static void putEncodedImage(String name, Object encodedImage, ResultWriter writer) {
+        if (encodedImage instanceof byte[]) {
+            writer.name(name).value((byte[]) encodedImage);
+        } else if (encodedImage != null) {
+            writer.name(name).value((String) encodedImage);
+        }
     }
 
-    private static String findValidFormatForReference(int format) {
+    static String findValidFormatForReference(int format) {
         if (format == Barcode.AZTEC) {
             return BarcodeFormat.AZTEC.toString();
         }
@@ -259,21 +295,6 @@ public class AnylinePluginHelper {
 
     }
 
-    public static void enableNativeBarcode(ScanView anylineScanView, final List<BarcodeFormat> barcodeFormats) {
-        anylineScanView.getCameraView().enableBarcodeDetection(new NativeBarcodeResultListener() {
-            @Override
-            public void onSuccess(List<com.google.mlkit.vision.barcode.Barcode> barcodes) {
-                setNativeBarcodeList(barcodes);
-            }
-
-            @Override
-            public void onFailure(String e) {
-                //finalBarcodeList=null;  // otherwise result from previous scan would be shown
-            }
-
-        }, barcodeFormats);
-    }
-
     protected static void showToast(String st, Context context) {
         try {
             notificationToast.getView().isShown();
@@ -285,37 +306,31 @@ public class AnylinePluginHelper {
     }
 
     // Meter helper
-    public static JSONObject setMeterScanMode(MeterScanMode scanMode, JSONObject jsonResult) {
-        try {
-            switch (scanMode) {
-                case DIGITAL_METER:
-                    jsonResult.put("meterType", "Digital Meter");
-                    break;
-                case DIAL_METER:
-                    jsonResult.put("meterType", "Dial Meter");
-                    break;
-                case ANALOG_METER:
-                    jsonResult.put("meterType", "Analog Meter");
-                    break;
-                case AUTO_ANALOG_DIGITAL_METER:
-                    jsonResult.put("meterType", "Auto Analog Digital Meter");
-                    break;
-                case SERIAL_NUMBER:
-                    jsonResult.put("meterType", "Serial Number");
-                    break;
-                case DOT_MATRIX_METER:
-                    jsonResult.put("meterType", "Dot Matrix Meter");
-                    break;
-                default:
-                    jsonResult.put("meterType", "Electric Meter");
-                    break;
-            }
-
-            jsonResult.put("scanMode", scanMode.toString());
-        } catch (JSONException e) {
-            e.printStackTrace();
+    public static void writeMeterScanMode(MeterScanMode scanMode, ResultWriter writer) {
+        switch (scanMode) {
+            case DIGITAL_METER:
+                writer.name("meterType").value("Digital Meter");
+                break;
+            case DIAL_METER:
+                writer.name("meterType").value("Dial Meter");
+                break;
+            case ANALOG_METER:
+                writer.name("meterType").value("Analog Meter");
+                break;
+            case AUTO_ANALOG_DIGITAL_METER:
+                writer.name("meterType").value("Auto Analog Digital Meter");
+                break;
+            case SERIAL_NUMBER:
+                writer.name("meterType").value("Serial Number");
+                break;
+            case DOT_MATRIX_METER:
+                writer.name("meterType").value("Dot Matrix Meter");
+                break;
+            default:
+                writer.name("meterType").value("Electric Meter");
+                break;
         }
 
-        return jsonResult;
+        writer.name("scanMode").value(scanMode.toString());
     }
 }
\ No newline at end of file
@@ -0,0 +1,267 @@
+package io.anyline.flutter;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+import at.nineyards.anyline.core.LicenseException;
+import at.nineyards.anyline.core.RunFailure;
+import io.anyline.AnylineDebugListener;
+import io.anyline.camera.CameraController;
+import io.anyline.camera.CameraOpenListener;
+import io.anyline.plugin.licenseplate.LicensePlateScanViewPlugin;
+import io.anyline.plugin.meter.MeterScanViewPlugin;
+import io.anyline.plugin.ocr.OcrScanViewPlugin;
+import io.anyline.view.AbstractBaseScanViewPlugin;
+import io.anyline.view.ScanView;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import io.flutter.plugin.platform.PlatformView;
+
+/**
+ * A scan view embedded into the flutter widget tree, instead of the scan activity started by
+ * {@link Constants#METHOD_START_ANYLINE}, so flutter can draw on top of the camera and no activity is started.
+ * <p>
+ * Takes the same config and reports the same results as the scan activity: every result is sent on the
+ * {@link Constants#VIEW_TYPE_SCAN_VIEW} + "_" + view id + "/results" event channel, with cancelOnResult the view
+ * stops scanning after the result, until it is started again. While the app is in the background
+ * ({@link Constants#METHOD_PAUSE_SCAN_VIEW}) the view releases its camera, and scans on once the app is resumed if it
+ * was scanning before. Errors of the config or license are reported when
+ * the view is started ({@link Constants#METHOD_START_SCAN_VIEW}). Document configs are not supported, their scan
+ * activity takes the pictures with its own flow.
+ */
+public class AnylineScanPlatformView implements PlatformView, MethodChannel.MethodCallHandler,
+        ScanResultPipeline.Output, CameraOpenListener {
+
+    private static final String TAG = AnylineScanPlatformView.class.getSimpleName();
+
+    private final MethodChannel channel;
+    private final EventChannel resultChannel;
+    private final ResultStreamHandler resultStream = new ResultStreamHandler();
+    private final ScanView anylineScanView;
+    private final boolean structuredResult;
+    private ScanConfig scanConfig;
+    private AbstractBaseScanViewPlugin scanViewPlugin;
+    private ScanResultPipeline resultPipeline;
+    // the trace of the view, a new one for every scan started after the last one finished
+    private volatile ScanTrace scanTrace;
+    // null if the config does not ask for native barcodes
+    private NativeBarcodeDetection nativeBarcodeDetection;
+    // only changed on the main thread
+    private boolean scanning = false;
+    private boolean pausedWhileScanning = false;
+    // the error the view was created with, reported when flutter starts it
+    private String initErrorCode;
+    private String initErrorMessage;
+
+    AnylineScanPlatformView(Context context, BinaryMessenger messenger, int viewId, Map<?, ?> creationParams) {
+        String channelName = Constants.VIEW_TYPE_SCAN_VIEW + "_" + viewId;
+        channel = new MethodChannel(messenger, channelName);
+        channel.setMethodCallHandler(this);
+        resultChannel = new EventChannel(messenger, channelName + "/results");
+        resultChannel.setStreamHandler(resultStream);
+
+        // the trace of the embedded scan view starts with its creation, the scans of other views are traced on their own
+        scanTrace = new ScanTrace(ScanTrace.VIEW_CREATED);
+        structuredResult = Boolean.TRUE.equals(creationParams.get(Constants.EXTRA_STRUCTURED_RESULT));
+        anylineScanView = new ScanView(context, null);
+        initAnyline(context, (String) creationParams.get(Constants.EXTRA_CONFIG_JSON));
+    }
+
+    private void initAnyline(Context context, String configJson) {
+        try {
+            scanConfig = ScanConfig.get(configJson);
+            scanTrace.mark(ScanTrace.CONFIG_PARSED);
+            scanTrace.setLogEnabled(scanConfig.isScanTraceLog());
+            if (scanConfig.getPluginKind() == ScanConfig.PluginKind.DOCUMENT) {
+                setInitError(Constants.EXCEPTION_CONFIG, "Document scanning is not supported by the scan view.");
+                return;
+            }
+            ResultImageCache.setBudget(scanConfig.getImageCacheMaxBytes(), scanConfig.getImageCacheMaxFiles());
+            // no-op if done by METHOD_INIT_ANYLINE
+            AnylineInitializer.initSdk(scanConfig.getLicenseKey(), context);
+            scanTrace.mark(ScanTrace.SDK_INITIALIZED);
+            TraineddataInstaller.install(scanConfig.getOcrLanguageAssets(), context);
+            scanTrace.mark(ScanTrace.TRAINEDDATA_INSTALLED);
+
+            JSONObject json = scanConfig.getOptions();
+            if (scanConfig.getPluginKind() == ScanConfig.PluginKind.COMPOSITE) {
+                anylineScanView.initComposite(json);
+            } else {
+                anylineScanView.setScanConfig(json);
+            }
+            scanViewPlugin = anylineScanView.getScanViewPlugin();
+            if (scanViewPlugin == null) {
+                setInitError(Constants.EXCEPTION_CONFIG, "No scan view plugin in config.");
+                return;
+            }
+            nativeBarcodeDetection = AnylinePluginHelper.startNativeBarcodeDetection(scanConfig, anylineScanView);
+            setReportingEnabled();
+            anylineScanView.setCameraOpenListener(this);
+            scanViewPlugin.setDebugListener(new AnylineDebugListener() {
+                @Override
+                public void onDebug(String name, Object value) {
+                    scanTrace.mark(ScanTrace.FIRST_FRAME);
+                }
+
+                @Override
+                public void onRunSkipped(RunFailure runFailure) {
+                    scanTrace.mark(ScanTrace.FIRST_FRAME);
+                }
+            });
+
+            resultPipeline = new ScanResultPipeline(context, scanConfig, structuredResult, scanTrace, this);
+            // the barcodes of this view only, next to the scan activity and other views
+            resultPipeline.setNativeBarcodeDetection(nativeBarcodeDetection);
+            resultPipeline.addResultListeners(scanViewPlugin);
+        } catch (JSONException e) {
+            setInitError(Constants.EXCEPTION_CONFIG, "JSON ERROR: " + e.getMessage());
+        } catch (LicenseException e) {
+            setInitError(Constants.EXCEPTION_LICENSE, e.getMessage());
+        } catch (Exception e) {
+            // IllegalArgumentException is possible for errors in json, IOException for errors during asset copying
+            Log.e(TAG, "Exception is: ", e);
+            setInitError(Constants.EXCEPTION_CONFIG, e.getLocalizedMessage());
+        }
+    }
+
+    private void setInitError(String errorCode, String errorMessage) {
+        initErrorCode = errorCode;
+        initErrorMessage = errorMessage;
+    }
+
+    private void setReportingEnabled() {
+        Boolean reportingEnabled = scanConfig.getReportingEnabled();
+        if (reportingEnabled == null) {
+            return;
+        }
+        if (scanViewPlugin instanceof LicensePlateScanViewPlugin) {
+            ((LicensePlateScanViewPlugin) scanViewPlugin).getScanPlugin().setReportingEnabled(reportingEnabled);
+        } else if (scanViewPlugin instanceof OcrScanViewPlugin) {
+            ((OcrScanViewPlugin) scanViewPlugin).getScanPlugin().setReportingEnabled(reportingEnabled);
+        } else if (scanViewPlugin instanceof MeterScanViewPlugin) {
+            ((MeterScanViewPlugin) scanViewPlugin).getScanPlugin().setReportingEnabled(reportingEnabled);
+        }
+    }
+
+    @Override
+    public View getView() {
+        return anylineScanView;
+    }
+
+    @Override
+    public void onMethodCall(@NonNull MethodCall call, @NonNull MethodChannel.Result result) {
+        if (call.method.equals(Constants.METHOD_START_SCAN_VIEW)) {
+            if (initErrorCode != null) {
+                result.error(initErrorCode, initErrorMessage, null);
+                return;
+            }
+            // the next scan with the same scan view and camera
+            if (!scanTrace.isTracing()) {
+                scanTrace = new ScanTrace(ScanTrace.METHOD_CALL);
+                scanTrace.setLogEnabled(scanConfig.isScanTraceLog());
+            }
+            resultPipeline.startNextScan(structuredResult, scanTrace);
+            pausedWhileScanning = false;
+            startScanning();
+            result.success(null);
+        } else if (call.method.equals(Constants.METHOD_STOP_SCAN_VIEW)) {
+            pausedWhileScanning = false;
+            stopScanning();
+            result.success(null);
+        } else if (call.method.equals(Constants.METHOD_PAUSE_SCAN_VIEW)) {
+            // the app went to the background, the camera is released for other apps
+            if (scanning) {
+                pausedWhileScanning = true;
+                stopScanning();
+            }
+            result.success(null);
+        } else if (call.method.equals(Constants.METHOD_RESUME_SCAN_VIEW)) {
+            // the scan goes on where it was paused, it is not started anew
+            if (pausedWhileScanning) {
+                pausedWhileScanning = false;
+                startScanning();
+            }
+            result.success(null);
+        } else if (call.method.equals(Constants.METHOD_GET_SCAN_TRACE)) {
+            result.success(scanTrace.getSpans());
+        } else {
+            result.notImplemented();
+        }
+    }
+
+    private void startScanning() {
+        scanning = true;
+        anylineScanView.start();
+    }
+
+    private void stopScanning() {
+        scanning = false;
+        anylineScanView.stop();
+        anylineScanView.releaseCameraInBackground();
+    }
+
+    @Override
+    public void onResult(ResultWriter writer) {
+        resultStream.sendResult(toTransportValue(writer.result()));
+        scanTrace.mark(ScanTrace.RESULT_RETURNED);
+        // cancelOnResult of the view plugin or composite, the scan view stays with its camera until it is disposed
+        if (scanConfig.isCancelOnResult()) {
+            scanTrace.finish();
+            anylineScanView.post(new Runnable() {
+                @Override
+                public void run() {
+                    // not resumed with the app either, the scan is done
+                    scanning = false;
+                    pausedWhileScanning = false;
+                    anylineScanView.stop();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onPartialResult(Object result) {
+        resultStream.sendResult(toTransportValue(result));
+    }
+
+    private Object toTransportValue(Object result) {
+        return structuredResult ? StructuredResult.toStandardValue(result) : result.toString();
+    }
+
+    @Override
+    public void onCameraOpened(CameraController cameraController, int width, int height) {
+        scanTrace.mark(ScanTrace.CAMERA_OPENED);
+        Log.d(TAG, "Camera opened. Frame size " + width + " x " + height + ".");
+    }
+
+    @Override
+    public void onCameraError(Exception e) {
+        resultStream.sendErrorAndEnd(Constants.EXCEPTION_NO_CAMERA_PERMISSION, e.getMessage());
+    }
+
+    @Override
+    public void dispose() {
+        scanTrace.finish();
+        channel.setMethodCallHandler(null);
+        resultChannel.setStreamHandler(null);
+        resultStream.end();
+        if (nativeBarcodeDetection != null) {
+            nativeBarcodeDetection.stop();
+        }
+        anylineScanView.stop();
+        anylineScanView.releaseCameraInBackground();
+        if (resultPipeline != null) {
+            resultPipeline.shutdown();
+        }
+    }
+}
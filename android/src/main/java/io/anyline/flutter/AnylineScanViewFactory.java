@@ -0,0 +1,40 @@
+package io.anyline.flutter;
+
+import android.app.Activity;
+import android.content.Context;
+
+import java.util.Collections;
+import java.util.Map;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.StandardMessageCodec;
+import io.flutter.plugin.platform.PlatformView;
+import io.flutter.plugin.platform.PlatformViewFactory;
+
+/**
+ * Creates the embedded scan views ({@link Constants#VIEW_TYPE_SCAN_VIEW}), see {@link AnylineScanPlatformView}.
+ * The creation params are the ones of {@link Constants#METHOD_START_ANYLINE}.
+ */
+public class AnylineScanViewFactory extends PlatformViewFactory {
+
+    private final BinaryMessenger messenger;
+    private Activity activity;
+
+    public AnylineScanViewFactory(BinaryMessenger messenger) {
+        super(StandardMessageCodec.INSTANCE);
+        this.messenger = messenger;
+    }
+
+    /**
+     * The activity the scan views are shown in, the camera is opened with it if set.
+     */
+    void setActivity(Activity activity) {
+        this.activity = activity;
+    }
+
+    @Override
+    public PlatformView create(Context context, int viewId, Object args) {
+        Map<?, ?> creationParams = args instanceof Map ? (Map<?, ?>) args : Collections.emptyMap();
+        return new AnylineScanPlatformView(activity != null ? activity : context, messenger, viewId, creationParams);
+    }
+}
@@ -34,10 +34,19 @@ public class AnylineUIConfig {
      * @param jsonObject the json object with the settings
      */
     public AnylineUIConfig(Context context, JSONObject jsonObject) {
-        initFromJsonObject(context, jsonObject);
+        initFromJsonObject(jsonObject);
     }
 
-    private void initFromJsonObject(Context context, JSONObject json) {
+    /**
+     * Create config from the given json object.
+     *
+     * @param jsonObject the json object with the settings
+     */
+    public AnylineUIConfig(JSONObject jsonObject) {
+        initFromJsonObject(jsonObject);
+    }
+
+    private void initFromJsonObject(JSONObject json) {
         JSONObject segment = json.optJSONObject(SEGMENT);
 
         if (segment != null) {
@@ -0,0 +1,122 @@
+package io.anyline.flutter;
+
+import android.os.SystemClock;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the barcodes the native barcode scanner finds over the frames of a scan.
+ * <p>
+ * Barcodes are keyed by value and format, every frame counts one vote per barcode. Frames are added on the ML Kit
+ * callback thread while the result is built on another thread, so all methods are thread safe.
+ */
+public class BarcodeAccumulator {
+
+    public static class DetectedBarcode {
+        private final String value;
+        private final String format;
+        private final long firstSeen;
+        private final AtomicInteger frames = new AtomicInteger();
+        private volatile long lastSeen;
+
+        DetectedBarcode(String value, String format, long firstSeen) {
+            this.value = value;
+            this.format = format;
+            this.firstSeen = firstSeen;
+            this.lastSeen = firstSeen;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        /**
+         * The number of frames the barcode was found in.
+         */
+        public int getFrames() {
+            return frames.get();
+        }
+
+        /**
+         * When the barcode was found first, in milliseconds of {@link SystemClock#elapsedRealtime()}.
+         */
+        public long getFirstSeen() {
+            return firstSeen;
+        }
+
+        public long getLastSeen() {
+            return lastSeen;
+        }
+    }
+
+    private final ConcurrentHashMap<String, DetectedBarcode> barcodes = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the barcodes found in one frame, a barcode found several times in the frame counts once.
+     */
+    public void addFrame(List<Barcode> frame) {
+        if (frame == null || frame.isEmpty()) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        Set<String> frameKeys = new HashSet<>(frame.size() * 2);
+        for (Barcode barcode : frame) {
+            String value = barcode.getDisplayValue();
+            if (value == null) {
+                continue;
+            }
+            String key = barcode.getFormat() + ":" + value;
+            if (!frameKeys.add(key)) {
+                continue;
+            }
+            DetectedBarcode detectedBarcode = barcodes.get(key);
+            if (detectedBarcode == null) {
+                DetectedBarcode newBarcode = new DetectedBarcode(value,
+                        AnylinePluginHelper.findValidFormatForReference(barcode.getFormat()), now);
+                detectedBarcode = barcodes.putIfAbsent(key, newBarcode);
+                if (detectedBarcode == null) {
+                    detectedBarcode = newBarcode;
+                }
+            }
+            detectedBarcode.frames.incrementAndGet();
+            detectedBarcode.lastSeen = now;
+        }
+    }
+
+    /**
+     * @param minFrames the number of frames a barcode has to be found in to be returned
+     * @return the barcodes found in at least minFrames frames, in the order they were found first
+     */
+    public List<DetectedBarcode> snapshot(int minFrames) {
+        List<DetectedBarcode> snapshot = new ArrayList<>();
+        for (DetectedBarcode detectedBarcode : barcodes.values()) {
+            if (detectedBarcode.getFrames() >= minFrames) {
+                snapshot.add(detectedBarcode);
+            }
+        }
+        Collections.sort(snapshot, new Comparator<DetectedBarcode>() {
+            @Override
+            public int compare(DetectedBarcode barcode1, DetectedBarcode barcode2) {
+                return Long.compare(barcode1.getFirstSeen(), barcode2.getFirstSeen());
+            }
+        });
+        return snapshot;
+    }
+
+    public void clear() {
+        barcodes.clear();
+    }
+}
@@ -4,6 +4,25 @@ public class Constants {
     public static final String METHOD_GET_SDK_VERSION = "METHOD_GET_SDK_VERSION";
     public static final String METHOD_SET_LICENSE_KEY = "METHOD_SET_LICENSE_KEY";
     public static final String METHOD_START_ANYLINE = "METHOD_START_ANYLINE";
+    public static final String METHOD_INIT_ANYLINE = "METHOD_INIT_ANYLINE";
+    public static final String METHOD_GET_RESULT_IMAGES = "METHOD_GET_RESULT_IMAGES";
+    public static final String METHOD_PIN_RESULT_IMAGES = "METHOD_PIN_RESULT_IMAGES";
+    public static final String METHOD_RELEASE_RESULT_IMAGES = "METHOD_RELEASE_RESULT_IMAGES";
+    public static final String METHOD_GET_IMAGE = "METHOD_GET_IMAGE";
+    public static final String METHOD_RELEASE_IMAGE = "METHOD_RELEASE_IMAGE";
+    public static final String METHOD_REQUEST_RESULTS = "METHOD_REQUEST_RESULTS";
+    public static final String METHOD_CLOSE_SESSION = "METHOD_CLOSE_SESSION";
+    public static final String METHOD_START_SCAN_VIEW = "METHOD_START_SCAN_VIEW";
+    public static final String METHOD_STOP_SCAN_VIEW = "METHOD_STOP_SCAN_VIEW";
+    public static final String METHOD_PAUSE_SCAN_VIEW = "METHOD_PAUSE_SCAN_VIEW";
+    public static final String METHOD_RESUME_SCAN_VIEW = "METHOD_RESUME_SCAN_VIEW";
+    public static final String METHOD_GET_SCAN_TRACE = "METHOD_GET_SCAN_TRACE";
+
+    public static final String EVENT_CHANNEL_RESULTS = "anyline_plugin/results";
+
+    // the method channel of an embedded scan view is VIEW_TYPE_SCAN_VIEW + "_" + view id, its results are sent on
+    // the event channel with "/results" appended
+    public static final String VIEW_TYPE_SCAN_VIEW = "anyline_plugin/scan_view";
 
     public static final String EXTRA_CONFIG_JSON = "EXTRA_CONFIG_JSON";
     public static final String EXTRA_LICENSE_KEY = "EXTRA_LICENSE_KEY";
@@ -12,6 +31,16 @@ public class Constants {
     public static final String EXTRA_ERROR_CODE = "EXTRA_ERROR_MESSAGE";
     public static final String EXTRA_OCR_CONFIG_JSON = "EXTRA_OCR_CONFIG_JSON";
     public static final String EXTRA_ENABLE_BARCODE_SCANNING = "EXTRA_ENABLE_BARCODE_SCANNING";
+    public static final String EXTRA_STRUCTURED_RESULT = "EXTRA_STRUCTURED_RESULT";
+    public static final String EXTRA_RESULT_ID = "EXTRA_RESULT_ID";
+    public static final String EXTRA_IMAGE_PATHS = "EXTRA_IMAGE_PATHS";
+    public static final String EXTRA_IMAGE_HANDLE = "EXTRA_IMAGE_HANDLE";
+    public static final String EXTRA_IMAGE_OUTPUT = "EXTRA_IMAGE_OUTPUT";
+    public static final String EXTRA_BATCH_SIZE = "EXTRA_BATCH_SIZE";
+    public static final String EXTRA_BATCH_INTERVAL = "EXTRA_BATCH_INTERVAL";
+    public static final String EXTRA_DEMAND = "EXTRA_DEMAND";
+    public static final String EXTRA_BUFFER_SIZE = "EXTRA_BUFFER_SIZE";
+    public static final String EXTRA_SESSION = "EXTRA_SESSION";
 
     public static final String EXCEPTION_DEFAULT = "AnylineException";
     public static final String EXCEPTION_LICENSE = "AnylineLicenseException";
@@ -5,7 +5,6 @@ import android.animation.ValueAnimator;
 import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.graphics.Bitmap;
-import android.graphics.Color;
 import android.graphics.PointF;
 import android.os.Bundle;
 import android.os.Handler;
@@ -25,12 +24,10 @@ import android.widget.Toast;
 import androidx.core.content.ContextCompat;
 
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
-import java.util.UUID;
 
 import io.anyline.camera.CameraController;
 import io.anyline.camera.CameraOpenListener;
@@ -38,7 +35,6 @@ import io.anyline.models.AnylineImage;
 import io.anyline.plugin.ScanResult;
 import io.anyline.plugin.document.DocumentScanResultListener;
 import io.anyline.plugin.document.DocumentScanViewPlugin;
-import io.anyline.util.TempFileUtil;
 import io.anyline.view.ScanView;
 
 /**
@@ -60,13 +56,16 @@ public class Document4Activity extends AnylineBaseActivity implements CameraOpen
     private int quality = 100;
     private Runnable errorMessageCleanup;
     private ImageButton btnCapture;
-    JSONObject jsonResult;
 
     private android.os.Handler handler = new android.os.Handler();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (scanConfig == null) {
+            // invalid config, already finishing
+            return;
+        }
         setContentView(getResources().getIdentifier("activity_scan_document", "layout", getPackageName()));
 
 
@@ -108,10 +107,8 @@ public class Document4Activity extends AnylineBaseActivity implements CameraOpen
         documentScanView.setCameraOpenListener(this);
         // the view can be configured via a json file in the assets, and this config is set here
 
-        JSONObject json = null;
         try {
-            json = new JSONObject(configJson);
-            documentScanView.setScanConfig(json);
+            documentScanView.setScanConfig(scanConfig.getOptions());
         } catch (Exception e) {
             e.printStackTrace();
             Log.i(TAG, "**************** Exception: " + e);
@@ -119,47 +116,34 @@ public class Document4Activity extends AnylineBaseActivity implements CameraOpen
 
         btnCapture = findViewById(getResources().getIdentifier("capture", "id", getPackageName()));
 
-        // get Document specific Configs
-        if (json.has("document")) {
-            try {
-                // Get the Document specific Config
-                JSONObject documentConfig = json.getJSONObject("document");
-
-                // set manual capture Button Config
-                if (documentConfig.has("manualCaptureButton")) {
-                    JSONObject manCapBtnConf = documentConfig.getJSONObject("manualCaptureButton");
-
-                    if (manCapBtnConf.has("buttonColor")) {
-                        //btnCapture.setBackgroundColor(Color.parseColor("#" + manCapBtnConf.getString("buttonColor")));
-                        btnCapture.setColorFilter(Color.parseColor("#" + manCapBtnConf.getString("buttonColor")));
-
-                    }
-
-                    // init Manual Capture Button
-                    btnCapture.setVisibility(View.VISIBLE);
-                    btnCapture.setOnClickListener(new View.OnClickListener() {
+        // set manual capture Button Config
+        if (Boolean.TRUE.equals(scanConfig.getManualCaptureEnabled())) {
+            if (scanConfig.getManualCaptureButtonColor() != null) {
+                //btnCapture.setBackgroundColor(Color.parseColor("#" + manCapBtnConf.getString("buttonColor")));
+                btnCapture.setColorFilter(scanConfig.getManualCaptureButtonColor());
+            }
 
-                        @Override
-                        public void onClick(View v) {
-                            btnCapture.setClickable(false);
-                            documentScanView.stop();
-                            ((DocumentScanViewPlugin) documentScanView.getScanViewPlugin()).triggerPictureCornerDetection();
-                        }
-                    });
+            // init Manual Capture Button
+            btnCapture.setVisibility(View.VISIBLE);
+            btnCapture.setOnClickListener(new View.OnClickListener() {
 
-                } else {
-                    btnCapture.setVisibility(View.GONE);
+                @Override
+                public void onClick(View v) {
+                    btnCapture.setClickable(false);
+                    documentScanView.stop();
+                    ((DocumentScanViewPlugin) documentScanView.getScanViewPlugin()).triggerPictureCornerDetection();
                 }
+            });
 
-            } catch (JSONException e) {
-                Log.e(TAG, e.getMessage());
-            }
+        } else if (Boolean.FALSE.equals(scanConfig.getManualCaptureEnabled())) {
+            btnCapture.setVisibility(View.GONE);
         }
 
         // initialize Anyline with the license key and a Listener that is called if a result is found
         documentScanView.getScanViewPlugin().addScanResultListener(new DocumentScanResultListener() {
             @Override
             public void onResult(ScanResult documentResult) {
+                ScanTrace.getScan().mark(ScanTrace.RESULT_RECEIVED);
 
                 // handle the result document images here
                 if (progressDialog != null && progressDialog.isShowing()) {
@@ -202,64 +186,41 @@ public class Document4Activity extends AnylineBaseActivity implements CameraOpen
                  * for example
                  *
                  */
-                File outDir = new File(getCacheDir(), "ok");
-                outDir.mkdir();
                 // change the file ending to png if you want a png
-                //JSONObject
-                jsonResult = new JSONObject();
+                resultWriter.reset().beginObject();
+                // only the fields the config asks for are computed
+                ResultWriter writer = ProjectingResultWriter.project(resultWriter, scanConfig.getResultFields());
                 try {
                     // convert the transformed image into a gray scaled image internally
                     // transformedImage.getGrayCvMat(false);
                     // get the transformed image as bitmap
                     // Bitmap bmp = transformedImage.getBitmap();
-                    // save the image with quality 100 (only used for jpeg, ignored for png)
-                    File imageFile = TempFileUtil.createTempFileCheckCache(Document4Activity.this,
-                            UUID.randomUUID().toString(), ".jpg");
-                    transformedImage.save(imageFile, quality);
-//                    showToast(getString(
-//                            getResources().getIdentifier("document_image_saved_to", "string", getPackageName())) + " " + imageFile.getAbsolutePath());
-
-                    jsonResult.put("imagePath", imageFile.getAbsolutePath());
-
-
-                    // Save the Full Frame Image
-                    if (fullFrame != null) {
-                        imageFile = TempFileUtil.createTempFileCheckCache(Document4Activity.this,
-                                UUID.randomUUID().toString(), ".jpg");
-                        fullFrame.save(imageFile, quality);
-                        jsonResult.put("fullImagePath", imageFile.getAbsolutePath());
+                    // save the images the config asks for in the background (quality 100 by default),
+                    // all of them are released once saved, skipped or their handles are released
+                    if (AnylinePluginHelper.putImages(Document4Activity.this, scanConfig, transformedImage, fullFrame,
+                            quality, true, writer)) {
+                        ScanTrace.getScan().mark(ScanTrace.IMAGES_ENCODED);
                     }
+
                     // Put outline and conficence to result
-                    jsonResult.put("outline", jsonForOutline(documentResult.getOutline()));
-                    jsonResult.put("confidence", documentResult.getConfidence());
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    if (writer.isWanted("outline")) {
+                        writer.name("outline");
+                        writeOutline(writer, documentResult.getOutline());
+                    }
+                    writer.name("confidence").json(documentResult.getConfidence());
                 } catch (JSONException jsonException) {
                     //should not be possible
                     Log.e(TAG, "Error while putting image path to json.", jsonException);
                 }
+                resultWriter.endObject();
 
-                // release the images
-                transformedImage.release();
-                fullFrame.release();
-
-                Boolean cancelOnResult = true;
-
-                JSONObject jsonObject;
-                try {
-                    jsonObject = new JSONObject(configJson);
-                    cancelOnResult = jsonObject.getBoolean("cancelOnResult");
-                } catch (Exception e) {
-                    Log.d(TAG, e.getLocalizedMessage());
-                }
-
-                if (cancelOnResult) {
-                    ResultReporter.onResult(jsonResult, true);
+                if (scanConfig.isCancelOnResult()) {
+                    ResultReporter.onResult(resultWriter.result(), true);
                     setResult(Constants.RESULT_OK);
                     finish();
                 } else {
                     btnCapture.setClickable(true);
-                    ResultReporter.onResult(jsonResult, false);
+                    ResultReporter.onResult(resultWriter.result(), false);
                 }
             }
 
@@ -292,11 +253,11 @@ public class Document4Activity extends AnylineBaseActivity implements CameraOpen
                 AnylineImage image = ((DocumentScanViewPlugin) documentScanView.getScanViewPlugin()).getCurrentFullImage();
 
                 if (image != null) {
-                    File outDir = new File(getCacheDir(), "error");
-                    outDir.mkdir();
+                    File outDir = ResultImageCache.getErrorImageDirectory(Document4Activity.this);
                     File outFile = new File(outDir, "" + System.currentTimeMillis() + documentError.name() + ".jpg");
                     try {
                         image.save(outFile, 100);
+                        ResultImageCache.register(outFile);
                         Log.d(TAG, "error image saved to " + outFile.getAbsolutePath());
                     } catch (IOException e) {
                         e.printStackTrace();
@@ -376,17 +337,24 @@ public class Document4Activity extends AnylineBaseActivity implements CameraOpen
                 // this is called after manual corner detection was requested
 
                 // save fullFrame
-                //JSONObject
-                jsonResult = new JSONObject();
+                // the result object is finished with the transformed image in onPictureTransformed
+                resultWriter.reset().beginObject();
+                ResultWriter writer = ProjectingResultWriter.project(resultWriter, scanConfig.getResultFields());
 
                 try {
-                    File imageFile = TempFileUtil.createTempFileCheckCache(Document4Activity.this, UUID.randomUUID().toString(), ".jpg");
-                    anylineImage.save(imageFile, quality);
-                    //manualResult.put("fullImagePath", imageFile.getAbsolutePath());
-                    jsonResult.put("fullImagePath", imageFile.getAbsolutePath());
-                    jsonResult.put("outline", jsonForOutline(list));
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    // saved right away, the image is still needed for the transformation
+                    ImageOutputPolicy imageOutput = scanConfig.getImageOutput();
+                    boolean fullImage = imageOutput.isFullImage() && writer.isWanted(imageOutput.getFullImageKey());
+                    if (fullImage) {
+                        // with the format, size and destination of the image output, like the other result images
+                        Object encodedImage = ImageEncoder.getImage(ImageEncoder.encode(Document4Activity.this,
+                                anylineImage, imageOutput, quality, false));
+                        AnylinePluginHelper.putEncodedImage(imageOutput.getFullImageKey(), encodedImage, writer);
+                    }
+                    if (writer.isWanted("outline")) {
+                        writer.name("outline");
+                        writeOutline(writer, (List<PointF>) list);
+                    }
                 } catch (JSONException e) {
                     e.printStackTrace();
                 }
@@ -406,41 +374,25 @@ public class Document4Activity extends AnylineBaseActivity implements CameraOpen
                     progressDialog.dismiss();
                 }
 
-                // save fullFrame
-                try {
-                    File imageFile = TempFileUtil.createTempFileCheckCache(Document4Activity.this, UUID.randomUUID().toString(), ".jpg");
-                    anylineImage.save(imageFile, quality);
-                    jsonResult.put("imagePath", imageFile.getAbsolutePath());
-
-                    //                    if (showSuccessToast) {
-                    //                        // Only show toast if user has specified it should be shown
-                    //                        showToast(getString(getResources().getIdentifier("document_image_saved_to", "string", getPackageName())) + " " + imageFile.getAbsolutePath());
-                    //                    }
-
-                } catch (IOException e) {
-                    e.printStackTrace();
-                } catch (JSONException e) {
-                    e.printStackTrace();
+                // save the transformed image, it is released once saved (or its handle is released)
+                if (AnylinePluginHelper.putImages(Document4Activity.this, scanConfig, anylineImage, null, quality,
+                        true, ProjectingResultWriter.project(resultWriter, scanConfig.getResultFields()))) {
+                    ScanTrace.getScan().mark(ScanTrace.IMAGES_ENCODED);
                 }
 
-                anylineImage.release();
-
-                Boolean cancelOnResult = true;
-                JSONObject jsonObject;
-                try {
-                    jsonObject = new JSONObject(configJson);
-                    cancelOnResult = jsonObject.getBoolean("cancelOnResult");
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                //                    if (showSuccessToast) {
+                //                        // Only show toast if user has specified it should be shown
+                //                        showToast(getString(getResources().getIdentifier("document_image_saved_to", "string", getPackageName())) + " " + imageFile.getAbsolutePath());
+                //                    }
+                resultWriter.endObject();
 
-                if (cancelOnResult) {
-                    ResultReporter.onResult(jsonResult, true);
+                if (scanConfig.isCancelOnResult()) {
+                    ResultReporter.onResult(resultWriter.result(), true);
                     setResult(Constants.RESULT_OK);
                     finish();
                 } else {
                     btnCapture.setClickable(true);
-                    ResultReporter.onResult(jsonResult, false);
+                    ResultReporter.onResult(resultWriter.result(), false);
                 }
             }
 
@@ -573,6 +525,7 @@ public class Document4Activity extends AnylineBaseActivity implements CameraOpen
 
     @Override
     public void onCameraOpened(CameraController cameraController, int width, int height) {
+        ScanTrace.getScan().mark(ScanTrace.CAMERA_OPENED);
         //the camera is opened async and this is called when the opening is finished
         Log.d(TAG, "Camera opened successfully. Frame resolution " + width + " x " + height);
     }
@@ -0,0 +1,70 @@
+package io.anyline.flutter;
+
+import android.os.SystemClock;
+
+/**
+ * Paces a detector which runs on the camera frames: only every nth detection is used, and at most the given number
+ * of detections per second. Instead of dropping the detections in between, the detector is paused for their time,
+ * so the skipped frames are not processed at all. The time of a detection is measured between two detections which
+ * follow each other without a pause. Thread safe.
+ */
+public class FrameGate {
+
+    /**
+     * Returned by {@link #onDetection()} for a detection which is not used.
+     */
+    public static final long SKIP = -1;
+
+    private final int frameInterval;
+    private final long minIntervalMillis;
+    // 0 until measured
+    private long detectionMillis = 0;
+    // 0 after a pause
+    private long lastDetection = 0;
+    private boolean paused = false;
+
+    /**
+     * @param frameInterval only every nth detection is used, 1 for every detection
+     * @param maxRate       the maximum detections used per second, 0 for no limit
+     */
+    public FrameGate(int frameInterval, double maxRate) {
+        this.frameInterval = Math.max(1, frameInterval);
+        this.minIntervalMillis = maxRate > 0 ? Math.round(1000 / maxRate) : 0;
+    }
+
+    /**
+     * Called for every detection of the detector.
+     *
+     * @return {@link #SKIP} if the detection is not used (it was made while the pause was requested), otherwise how
+     * long the detector should be paused after this detection, 0 to go on with the next frame
+     */
+    public synchronized long onDetection() {
+        if (paused) {
+            return SKIP;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (lastDetection != 0) {
+            detectionMillis = now - lastDetection;
+        }
+        lastDetection = now;
+        if (frameInterval > 1 && detectionMillis == 0) {
+            // the time of a detection is only known with the next one
+            return 0;
+        }
+        // the next detection is made one detection time after the detector is resumed
+        long pauseMillis = Math.max(frameInterval * detectionMillis, minIntervalMillis) - detectionMillis;
+        if (pauseMillis <= 0) {
+            return 0;
+        }
+        paused = true;
+        return pauseMillis;
+    }
+
+    /**
+     * Called once the detector runs again after a pause.
+     */
+    public synchronized void resume() {
+        paused = false;
+        lastDetection = 0;
+    }
+}
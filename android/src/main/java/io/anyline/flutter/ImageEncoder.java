@@ -0,0 +1,222 @@
+package io.anyline.flutter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.anyline.models.AnylineImage;
+
+/**
+ * Encodes the result images on a small background pool instead of the thread the SDK reports the result on.
+ * <p>
+ * The pool and its queue are bounded, if the queue is full the image is encoded on the calling thread. The pool is
+ * as large as the one which serializes the results of a composite in parallel ({@link ResultProcessor#invokeAll}),
+ * so the images of the plugin results are encoded in parallel as well. With
+ * {@link ScanConfig#isDeferredImages()} the result is reported before the images are written, the paths can be
+ * fetched afterwards with {@link #awaitResultImages(String)} using the resultId of the result.
+ */
+public class ImageEncoder {
+
+    private static final String TAG = ImageEncoder.class.getSimpleName();
+
+    // at least the cutout and the full image of a result in parallel
+    private static final int POOL_SIZE = Math.max(2, ResultProcessor.getParallelism());
+    private static final int QUEUE_SIZE = 8;
+    private static final int MAX_PENDING_RESULTS = 32;
+    private static final int INITIAL_BUFFER_SIZE = 512 * 1024;
+
+    // encode buffers are reused, so they only grow once to the size of the largest image
+    private static final ArrayBlockingQueue<ByteArrayOutputStream> buffers =
+            new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+
+    // images of deferred results which were not fetched yet, the oldest are dropped
+    private static final Map<String, Map<String, Future<Object>>> pendingResults =
+            new LinkedHashMap<String, Map<String, Future<Object>>>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, Future<Object>>> eldest) {
+                    return size() > MAX_PENDING_RESULTS;
+                }
+            };
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AnylineImageEncoder");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    /**
+     * Encodes the image into a new file in the image directory of the plugin, or into a byte array if the image
+     * output asks for bytes.
+     *
+     * @param context        the context
+     * @param image          the image to encode
+     * @param imageOutput    the format, size and destination to encode the image with
+     * @param defaultQuality the quality if the image output does not define one
+     * @param release        if the image should be released once it is encoded
+     * @return the future path of the saved file, or the future encoded bytes
+     */
+    public static Future<Object> encode(final Context context, final AnylineImage image,
+                                        final ImageOutputPolicy imageOutput, final int defaultQuality,
+                                        final boolean release) {
+        return executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                try {
+                    int quality = imageOutput.getQuality(defaultQuality);
+                    if (imageOutput.isBytes()) {
+                        return encodeToBytes(image, imageOutput, quality);
+                    }
+                    File imageFile = writeImage(context, image, imageOutput, quality);
+                    ResultImageCache.register(imageFile);
+                    return imageFile.getAbsolutePath();
+                } finally {
+                    if (release) {
+                        image.release();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies the image, so it can be kept or encoded after the SDK released its own. The copy is owned by the
+     * caller and has to be released.
+     *
+     * @param imageOutput the output the copy is scaled down to right away (see {@link ImageOutputPolicy#scale}), so
+     *                    the full resolution is never copied if it is not returned; null to copy it as it is
+     * @return the copy, or null if the image has no pixels to copy
+     */
+    public static AnylineImage copy(AnylineImage image, ImageOutputPolicy imageOutput) {
+        Bitmap bitmap = image.getBitmap();
+        if (bitmap == null) {
+            return null;
+        }
+        if (imageOutput != null) {
+            Bitmap scaled = imageOutput.scale(bitmap);
+            if (scaled != bitmap) {
+                // already a bitmap of its own
+                return new AnylineImage(scaled);
+            }
+        }
+        Bitmap.Config config = bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+        return new AnylineImage(bitmap.copy(config, false));
+    }
+
+    private static File writeImage(Context context, AnylineImage image, ImageOutputPolicy imageOutput, int quality)
+            throws IOException {
+        File imageFile = new File(ResultImageCache.getImageDirectory(context),
+                UUID.randomUUID().toString() + imageOutput.getFileExtension());
+        if (!imageOutput.needsBitmap()) {
+            image.save(imageFile, quality);
+            return imageFile;
+        }
+        Bitmap bitmap = image.getBitmap();
+        Bitmap scaled = imageOutput.scale(bitmap);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(imageFile))) {
+            scaled.compress(imageOutput.getFormat(), quality, out);
+        } finally {
+            if (scaled != bitmap) {
+                scaled.recycle();
+            }
+        }
+        return imageFile;
+    }
+
+    private static byte[] encodeToBytes(AnylineImage image, ImageOutputPolicy imageOutput, int quality) {
+        ByteArrayOutputStream buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        }
+        Bitmap bitmap = image.getBitmap();
+        Bitmap scaled = imageOutput.scale(bitmap);
+        try {
+            scaled.compress(imageOutput.getFormat(), quality, buffer);
+            return buffer.toByteArray();
+        } finally {
+            if (scaled != bitmap) {
+                scaled.recycle();
+            }
+            buffer.reset();
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Waits for the image to be encoded.
+     *
+     * @return the path or the bytes, or null if the image could not be encoded
+     */
+    public static Object getImage(Future<Object> image) {
+        try {
+            return image.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Image could not be encoded.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the images of a result which is reported before they are saved.
+     *
+     * @param images the future paths by their result key (e.g. imagePath)
+     * @return the resultId to fetch the paths with
+     */
+    public static String deferResultImages(Map<String, Future<Object>> images) {
+        String resultId = UUID.randomUUID().toString();
+        synchronized (pendingResults) {
+            pendingResults.put(resultId, images);
+        }
+        return resultId;
+    }
+
+    /**
+     * Waits until all images of a deferred result are encoded. Can only be called once per result.
+     *
+     * @return the paths or bytes by their result key, or null if the resultId is unknown
+     */
+    public static Map<String, Object> awaitResultImages(String resultId) {
+        Map<String, Future<Object>> images;
+        synchronized (pendingResults) {
+            images = pendingResults.remove(resultId);
+        }
+        if (images == null) {
+            return null;
+        }
+        Map<String, Object> encodedImages = new HashMap<>();
+        for (Map.Entry<String, Future<Object>> image : images.entrySet()) {
+            encodedImages.put(image.getKey(), getImage(image.getValue()));
+        }
+        return encodedImages;
+    }
+}
@@ -0,0 +1,138 @@
+package io.anyline.flutter;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import io.anyline.models.AnylineImage;
+
+/**
+ * Keeps the result images of a config with "imageDelivery": "lazy" unencoded until flutter asks for them.
+ * <p>
+ * The result only contains a handle per image. {@link Constants#METHOD_GET_IMAGE} encodes the image at the size and
+ * quality flutter asks for, {@link Constants#METHOD_RELEASE_IMAGE} drops it. Handles which are not used for the
+ * configured timeout are released automatically.
+ * <p>
+ * A handle owns its image: an image the SDK keeps owning is copied when the handle is created, so the handle stays
+ * valid after the SDK released the result.
+ */
+public class ImageHandles {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final Map<String, Handle> handles = new HashMap<>();
+
+    private static final ScheduledThreadPoolExecutor timeoutExecutor = createTimeoutExecutor();
+
+    private static ScheduledThreadPoolExecutor createTimeoutExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AnylineImageHandles");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static class Handle {
+        final AnylineImage image;
+        final long timeoutMillis;
+        ScheduledFuture<?> timeout;
+        int encodings = 0;
+        boolean released = false;
+
+        Handle(AnylineImage image, long timeoutMillis) {
+            this.image = image;
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+    /**
+     * Keeps the image until it is released or times out.
+     *
+     * @param image         the image
+     * @param releaseImage  if the handle takes over the image and releases it, false if the SDK owns it (the handle
+     *                      keeps a copy then)
+     * @param timeoutMillis how long the handle is kept after it was created or last encoded
+     * @return the handle to put into the result, or null if the image could not be copied
+     */
+    public static String retain(AnylineImage image, boolean releaseImage, long timeoutMillis) {
+        AnylineImage ownImage = releaseImage ? image : ImageEncoder.copy(image, null);
+        if (ownImage == null) {
+            return null;
+        }
+        String id = UUID.randomUUID().toString();
+        Handle handle = new Handle(ownImage, timeoutMillis);
+        synchronized (handles) {
+            handles.put(id, handle);
+            scheduleTimeout(id, handle);
+        }
+        return id;
+    }
+
+    /**
+     * Encodes the image of the handle, the handle stays valid and can be encoded again with another image output.
+     *
+     * @return the path or bytes of the encoded image, or null if the handle is unknown, released or failed to encode
+     */
+    public static Object encode(Context context, String id, ImageOutputPolicy imageOutput) {
+        Handle handle;
+        synchronized (handles) {
+            handle = handles.get(id);
+            if (handle == null) {
+                return null;
+            }
+            handle.encodings++;
+            handle.timeout.cancel(false);
+        }
+        try {
+            return ImageEncoder.getImage(ImageEncoder.encode(context, handle.image, imageOutput, 90, false));
+        } finally {
+            synchronized (handles) {
+                handle.encodings--;
+                if (handle.released) {
+                    releaseImage(handle);
+                } else if (handle.encodings == 0) {
+                    scheduleTimeout(id, handle);
+                }
+            }
+        }
+    }
+
+    public static void release(String id) {
+        synchronized (handles) {
+            Handle handle = handles.remove(id);
+            if (handle == null) {
+                return;
+            }
+            handle.timeout.cancel(false);
+            handle.released = true;
+            releaseImage(handle);
+        }
+    }
+
+    private static void scheduleTimeout(final String id, Handle handle) {
+        handle.timeout = timeoutExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                release(id);
+            }
+        }, handle.timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // the image is released once the last running encoding is done
+    private static void releaseImage(Handle handle) {
+        if (handle.encodings == 0) {
+            handle.image.release();
+        }
+    }
+}
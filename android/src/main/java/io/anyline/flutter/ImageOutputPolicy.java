@@ -0,0 +1,133 @@
+package io.anyline.flutter;
+
+import android.graphics.Bitmap;
+
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/**
+ * Which result images are saved and how, read from the "imageOutput" block of the config options:
+ * <pre>
+ * "imageOutput": {
+ *   "cutoutImage": true,
+ *   "fullImage": false,
+ *   "maxDimension": 1280,
+ *   "format": "jpeg", // "png" or "webp"
+ *   "quality": 80,
+ *   "destination": "file" // or "bytes"
+ * }
+ * </pre>
+ * All keys are optional, without the block both images are saved as jpeg in full size. With "bytes" no file is
+ * written, the encoded images are put into the result instead of their paths (see {@link #getCutoutImageKey()}).
+ */
+public class ImageOutputPolicy {
+
+    public static final ImageOutputPolicy DEFAULT = new ImageOutputPolicy(null);
+
+    private final boolean cutoutImage;
+    private final boolean fullImage;
+    private final int maxDimension;
+    private final Bitmap.CompressFormat format;
+    private final Integer quality;
+    private final boolean bytes;
+
+    public ImageOutputPolicy(JSONObject imageOutput) {
+        if (imageOutput == null) {
+            imageOutput = new JSONObject();
+        }
+        cutoutImage = imageOutput.optBoolean("cutoutImage", true);
+        fullImage = imageOutput.optBoolean("fullImage", true);
+        maxDimension = imageOutput.optInt("maxDimension", 0);
+        // Bitmap.compress only accepts 0..100
+        quality = imageOutput.has("quality") ? Math.max(0, Math.min(100, imageOutput.optInt("quality"))) : null;
+        bytes = "bytes".equals(imageOutput.optString("destination", "file"));
+
+        switch (imageOutput.optString("format", "jpeg").toLowerCase(Locale.US)) {
+            case "png":
+                format = Bitmap.CompressFormat.PNG;
+                break;
+            case "webp":
+                format = Bitmap.CompressFormat.WEBP;
+                break;
+            case "jpeg":
+            case "jpg":
+            default:
+                format = Bitmap.CompressFormat.JPEG;
+                break;
+        }
+    }
+
+    /**
+     * If the cutout image (for documents the transformed image) is saved.
+     */
+    public boolean isCutoutImage() {
+        return cutoutImage;
+    }
+
+    public boolean isFullImage() {
+        return fullImage;
+    }
+
+    /**
+     * If the images are returned as encoded bytes instead of being saved to files.
+     */
+    public boolean isBytes() {
+        return bytes;
+    }
+
+    /**
+     * The result key of the cutout image: "imagePath", or "imageBytes" if the image is returned as bytes.
+     */
+    public String getCutoutImageKey() {
+        return bytes ? "imageBytes" : "imagePath";
+    }
+
+    public String getFullImageKey() {
+        return bytes ? "fullImageBytes" : "fullImagePath";
+    }
+
+    public Bitmap.CompressFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @param defaultQuality the quality used if the config does not set one
+     */
+    public int getQuality(int defaultQuality) {
+        return quality != null ? quality : defaultQuality;
+    }
+
+    public String getFileExtension() {
+        switch (format) {
+            case PNG:
+                return ".png";
+            case WEBP:
+                return ".webp";
+            default:
+                return ".jpg";
+        }
+    }
+
+    /**
+     * If the image has to be converted to a bitmap first, otherwise the SDK can save the full size jpeg itself.
+     */
+    public boolean needsBitmap() {
+        return bytes || maxDimension > 0 || format != Bitmap.CompressFormat.JPEG;
+    }
+
+    /**
+     * Scales the bitmap down so its larger side is at most maxDimension.
+     *
+     * @return the scaled bitmap, or the given one if it is small enough
+     */
+    public Bitmap scale(Bitmap bitmap) {
+        int largerSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (maxDimension <= 0 || largerSide <= maxDimension) {
+            return bitmap;
+        }
+        float factor = maxDimension / (float) largerSide;
+        return Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * factor),
+                Math.round(bitmap.getHeight() * factor), true);
+    }
+}
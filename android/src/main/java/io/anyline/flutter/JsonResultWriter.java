@@ -0,0 +1,251 @@
+package io.anyline.flutter;
+
+import android.util.Base64;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes the result as json string into a reused buffer, used if the result is sent as string.
+ * Image bytes are written base64 encoded.
+ */
+public class JsonResultWriter implements ResultWriter {
+
+    private static final int MAX_DEPTH = 32;
+
+    private final StringBuilder buffer = new StringBuilder(1024);
+    // per nesting level, if the next value or name is the first of its object or array
+    private final boolean[] first = new boolean[MAX_DEPTH];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    @Override
+    public boolean isWanted(String name) {
+        return true;
+    }
+
+    @Override
+    public ResultWriter reset() {
+        buffer.setLength(0);
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    @Override
+    public ResultWriter beginObject() {
+        return open('{');
+    }
+
+    @Override
+    public ResultWriter endObject() {
+        return close('}');
+    }
+
+    @Override
+    public ResultWriter beginArray() {
+        return open('[');
+    }
+
+    @Override
+    public ResultWriter endArray() {
+        return close(']');
+    }
+
+    @Override
+    public ResultWriter name(String name) {
+        separate();
+        writeString(name);
+        buffer.append(':');
+        afterName = true;
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        separate();
+        writeString(value);
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(boolean value) {
+        separate();
+        buffer.append(value);
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(long value) {
+        separate();
+        buffer.append(value);
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(double value) throws JSONException {
+        separate();
+        // same formatting as JSONObject, e.g. 12.0 is written as 12
+        if (value == (long) value) {
+            buffer.append((long) value);
+        } else {
+            buffer.append(JSONObject.numberToString(value));
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(double[] values) throws JSONException {
+        if (values == null) {
+            return nullValue();
+        }
+        beginArray();
+        for (double value : values) {
+            value(value);
+        }
+        return endArray();
+    }
+
+    @Override
+    public ResultWriter value(byte[] value) {
+        if (value == null) {
+            return nullValue();
+        }
+        return value(Base64.encodeToString(value, Base64.NO_WRAP));
+    }
+
+    @Override
+    public ResultWriter nullValue() {
+        separate();
+        buffer.append("null");
+        return this;
+    }
+
+    @Override
+    public ResultWriter json(Object value) throws JSONException {
+        if (value == null || value == JSONObject.NULL) {
+            nullValue();
+        } else if (value instanceof String) {
+            value((String) value);
+        } else if (value instanceof Boolean) {
+            value((boolean) (Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            value(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            value(((Number) value).doubleValue());
+        } else if (value instanceof byte[]) {
+            value((byte[]) value);
+        } else if (value instanceof double[]) {
+            value((double[]) value);
+        } else if (value instanceof JSONObject) {
+            JSONObject jsonObject = (JSONObject) value;
+            beginObject();
+            Iterator<String> keys = jsonObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                name(key).json(jsonObject.opt(key));
+            }
+            endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray jsonArray = (JSONArray) value;
+            beginArray();
+            for (int i = 0; i < jsonArray.length(); i++) {
+                json(jsonArray.opt(i));
+            }
+            endArray();
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey())).json(entry.getValue());
+            }
+            endObject();
+        } else if (value instanceof Collection) {
+            beginArray();
+            for (Object item : (Collection<?>) value) {
+                json(item);
+            }
+            endArray();
+        } else {
+            value(value.toString());
+        }
+        return this;
+    }
+
+    @Override
+    public Object result() {
+        return buffer.toString();
+    }
+
+    private ResultWriter open(char bracket) {
+        separate();
+        buffer.append(bracket);
+        first[depth++] = true;
+        return this;
+    }
+
+    private ResultWriter close(char bracket) {
+        depth--;
+        buffer.append(bracket);
+        return this;
+    }
+
+    // writes the comma between the values of an object or array
+    private void separate() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (first[depth - 1]) {
+                first[depth - 1] = false;
+            } else {
+                buffer.append(',');
+            }
+        }
+    }
+
+    private void writeString(String value) {
+        buffer.append('"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    buffer.append('\\').append(c);
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                case '\b':
+                    buffer.append("\\b");
+                    break;
+                case '\f':
+                    buffer.append("\\f");
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        buffer.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        buffer.append(c);
+                    }
+                    break;
+            }
+        }
+        buffer.append('"');
+    }
+}
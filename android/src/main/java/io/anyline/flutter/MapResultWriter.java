@@ -0,0 +1,169 @@
+package io.anyline.flutter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the result as maps and lists the {@link io.flutter.plugin.common.StandardMessageCodec} sends as they are,
+ * used with {@link Constants#EXTRA_STRUCTURED_RESULT}. Image bytes are written as they are and arrive as Uint8List.
+ */
+public class MapResultWriter implements ResultWriter {
+
+    // the open maps and lists
+    private final ArrayList<Object> stack = new ArrayList<>();
+    private String pendingName;
+    private Object root;
+
+    @Override
+    public boolean isWanted(String name) {
+        return true;
+    }
+
+    @Override
+    public ResultWriter reset() {
+        stack.clear();
+        pendingName = null;
+        root = null;
+        return this;
+    }
+
+    @Override
+    public ResultWriter beginObject() {
+        Map<String, Object> map = new HashMap<>();
+        add(map);
+        stack.add(map);
+        return this;
+    }
+
+    @Override
+    public ResultWriter endObject() {
+        stack.remove(stack.size() - 1);
+        return this;
+    }
+
+    @Override
+    public ResultWriter beginArray() {
+        List<Object> list = new ArrayList<>();
+        add(list);
+        stack.add(list);
+        return this;
+    }
+
+    @Override
+    public ResultWriter endArray() {
+        stack.remove(stack.size() - 1);
+        return this;
+    }
+
+    @Override
+    public ResultWriter name(String name) {
+        pendingName = name;
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(String value) {
+        return add(value);
+    }
+
+    @Override
+    public ResultWriter value(boolean value) {
+        return add(value);
+    }
+
+    @Override
+    public ResultWriter value(long value) {
+        // the codec sends ints smaller than longs
+        if (value == (int) value) {
+            return add((int) value);
+        }
+        return add(value);
+    }
+
+    @Override
+    public ResultWriter value(double value) {
+        return add(value);
+    }
+
+    @Override
+    public ResultWriter value(double[] values) {
+        return add(values);
+    }
+
+    @Override
+    public ResultWriter value(byte[] value) {
+        return add(value);
+    }
+
+    @Override
+    public ResultWriter nullValue() {
+        return add(null);
+    }
+
+    @Override
+    public ResultWriter json(Object value) {
+        if (value == JSONObject.NULL) {
+            return add(null);
+        } else if (value instanceof JSONObject) {
+            JSONObject jsonObject = (JSONObject) value;
+            beginObject();
+            Iterator<String> keys = jsonObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                name(key);
+                json(jsonObject.opt(key));
+            }
+            return endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray jsonArray = (JSONArray) value;
+            beginArray();
+            for (int i = 0; i < jsonArray.length(); i++) {
+                json(jsonArray.opt(i));
+            }
+            return endArray();
+        } else if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name(String.valueOf(entry.getKey()));
+                json(entry.getValue());
+            }
+            return endObject();
+        } else if (value instanceof Collection) {
+            beginArray();
+            for (Object item : (Collection<?>) value) {
+                json(item);
+            }
+            return endArray();
+        }
+        // strings, numbers, booleans and bytes are supported by the codec as they are
+        return add(value);
+    }
+
+    @Override
+    public Object result() {
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultWriter add(Object value) {
+        if (stack.isEmpty()) {
+            root = value;
+        } else {
+            Object parent = stack.get(stack.size() - 1);
+            if (parent instanceof Map) {
+                ((Map<String, Object>) parent).put(pendingName, value);
+                pendingName = null;
+            } else {
+                ((List<Object>) parent).add(value);
+            }
+        }
+        return this;
+    }
+}
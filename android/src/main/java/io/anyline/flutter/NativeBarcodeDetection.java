@@ -0,0 +1,109 @@
+package io.anyline.flutter;
+
+import com.google.mlkit.vision.barcode.Barcode;
+
+import java.util.List;
+
+import io.anyline.camera.NativeBarcodeResultListener;
+import io.anyline.plugin.barcode.BarcodeFormat;
+import io.anyline.view.ScanView;
+
+/**
+ * Runs the native barcode detection (ML Kit) of a scan view next to its plugin, and collects the barcodes it finds.
+ * Every scan view has its own detection, the barcodes are taken for the results of its plugin only.
+ * <p>
+ * The detection is paced by a {@link FrameGate} ("nativeBarcodeFrameInterval", "nativeBarcodeMaxRate"): after a
+ * detection the detection of the camera view is disabled for the frames which are skipped, and enabled again on the
+ * main thread afterwards.
+ */
+public class NativeBarcodeDetection implements NativeBarcodeResultListener {
+
+    private final ScanView scanView;
+    private final List<BarcodeFormat> barcodeFormats;
+    private final FrameGate frameGate;
+    private final BarcodeAccumulator detectedBarcodes = new BarcodeAccumulator();
+    private final int minFrames;
+    private volatile boolean running = false;
+
+    private final Runnable resume = new Runnable() {
+        @Override
+        public void run() {
+            if (running) {
+                frameGate.resume();
+                scanView.getCameraView().enableBarcodeDetection(NativeBarcodeDetection.this, barcodeFormats);
+            }
+        }
+    };
+
+    /**
+     * @param barcodeFormats the formats to look for, or null for all formats
+     * @param minFrames      the number of frames a barcode has to be found in to be reported
+     */
+    public NativeBarcodeDetection(ScanView scanView, List<BarcodeFormat> barcodeFormats, FrameGate frameGate,
+                                  int minFrames) {
+        this.scanView = scanView;
+        this.barcodeFormats = barcodeFormats;
+        this.frameGate = frameGate;
+        this.minFrames = minFrames;
+    }
+
+    /**
+     * Enables the detection, called on the main thread.
+     */
+    public void start() {
+        running = true;
+        frameGate.resume();
+        scanView.getCameraView().enableBarcodeDetection(this, barcodeFormats);
+    }
+
+    /**
+     * Disables the detection, also if it is paused, called on the main thread.
+     */
+    public void stop() {
+        running = false;
+        scanView.removeCallbacks(resume);
+        scanView.getCameraView().disableBarcodeDetection();
+    }
+
+    /**
+     * Returns the barcodes found in at least minFrames frames so far and starts collecting them anew, taken when a
+     * result is found so the barcodes of the next result are not mixed into it.
+     */
+    public List<BarcodeAccumulator.DetectedBarcode> takeDetectedBarcodes() {
+        List<BarcodeAccumulator.DetectedBarcode> barcodes = detectedBarcodes.snapshot(minFrames);
+        detectedBarcodes.clear();
+        return barcodes;
+    }
+
+    /**
+     * Drops the barcodes collected so far, e.g. for the next scan.
+     */
+    public void clearDetectedBarcodes() {
+        detectedBarcodes.clear();
+    }
+
+    @Override
+    public void onSuccess(List<Barcode> barcodes) {
+        final long pauseMillis = frameGate.onDetection();
+        if (pauseMillis == FrameGate.SKIP) {
+            return;
+        }
+        detectedBarcodes.addFrame(barcodes);
+        if (pauseMillis > 0) {
+            scanView.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (running) {
+                        scanView.getCameraView().disableBarcodeDetection();
+                        scanView.postDelayed(resume, pauseMillis);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onFailure(String e) {
+        //finalBarcodeList=null;  // otherwise result from previous scan would be shown
+    }
+}
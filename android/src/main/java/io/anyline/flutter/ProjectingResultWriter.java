@@ -0,0 +1,204 @@
+package io.anyline.flutter;
+
+import org.json.JSONException;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Writes only the fields of a result the config asks for ("resultFields"), and tells the result listeners which
+ * fields they can skip computing.
+ * <p>
+ * Wraps the writer of a result whose object is already open, the fields of that object are projected, nested values
+ * are written as they are. For composites the fields of every plugin result are projected.
+ */
+public class ProjectingResultWriter implements ResultWriter {
+
+    private final ResultWriter writer;
+    private final Set<String> fields;
+    // relative to the object the writer was wrapped in
+    private int depth = 0;
+    // the depth the skipped value started at, -1 if nothing is skipped
+    private int skipDepth = -1;
+    private boolean skipNextValue = false;
+
+    public ProjectingResultWriter(ResultWriter writer, Set<String> fields) {
+        this.writer = writer;
+        this.fields = fields;
+    }
+
+    /**
+     * @return the writer projected to the fields, or the writer itself if all fields are wanted (fields is null)
+     */
+    public static ResultWriter project(ResultWriter writer, Set<String> fields) {
+        return fields != null ? new ProjectingResultWriter(writer, fields) : writer;
+    }
+
+    /**
+     * @return if a field other than the given ones is wanted
+     */
+    public boolean isWantedOtherThan(Collection<String> names) {
+        for (String field : fields) {
+            if (!names.contains(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isWanted(String name) {
+        return fields.contains(name);
+    }
+
+    @Override
+    public ResultWriter reset() {
+        writer.reset();
+        depth = 0;
+        skipDepth = -1;
+        skipNextValue = false;
+        return this;
+    }
+
+    @Override
+    public ResultWriter beginObject() {
+        if (skip()) {
+            skipDepth = skipDepth < 0 ? depth : skipDepth;
+        } else {
+            writer.beginObject();
+        }
+        depth++;
+        return this;
+    }
+
+    @Override
+    public ResultWriter endObject() {
+        depth--;
+        if (!endSkipped()) {
+            writer.endObject();
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter beginArray() {
+        if (skip()) {
+            skipDepth = skipDepth < 0 ? depth : skipDepth;
+        } else {
+            writer.beginArray();
+        }
+        depth++;
+        return this;
+    }
+
+    @Override
+    public ResultWriter endArray() {
+        depth--;
+        if (!endSkipped()) {
+            writer.endArray();
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter name(String name) {
+        if (skipDepth >= 0) {
+            return this;
+        }
+        if (depth == 0 && !fields.contains(name)) {
+            skipNextValue = true;
+        } else {
+            writer.name(name);
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(String value) {
+        if (!skip()) {
+            writer.value(value);
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(boolean value) {
+        if (!skip()) {
+            writer.value(value);
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(long value) {
+        if (!skip()) {
+            writer.value(value);
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(double value) throws JSONException {
+        if (!skip()) {
+            writer.value(value);
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(double[] values) throws JSONException {
+        if (!skip()) {
+            writer.value(values);
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter value(byte[] value) {
+        if (!skip()) {
+            writer.value(value);
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter nullValue() {
+        if (!skip()) {
+            writer.nullValue();
+        }
+        return this;
+    }
+
+    @Override
+    public ResultWriter json(Object value) throws JSONException {
+        if (!skip()) {
+            writer.json(value);
+        }
+        return this;
+    }
+
+    @Override
+    public Object result() {
+        return writer.result();
+    }
+
+    // if the value which begins is the value of a skipped field or inside of one
+    private boolean skip() {
+        if (skipNextValue) {
+            skipNextValue = false;
+            return true;
+        }
+        return skipDepth >= 0;
+    }
+
+    // if the object or array which ends was skipped, the skipped value is done once its outermost one ends
+    private boolean endSkipped() {
+        if (skipDepth < 0) {
+            return false;
+        }
+        if (depth == skipDepth) {
+            skipDepth = -1;
+        }
+        return true;
+    }
+}
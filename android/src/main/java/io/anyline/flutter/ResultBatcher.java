@@ -0,0 +1,151 @@
+package io.anyline.flutter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the results of the result stream into batches and holds them back until flutter requested them, see
+ * {@link ResultStreamHandler} for the options. Not thread safe, only used on the main thread.
+ */
+public class ResultBatcher {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64;
+
+    /**
+     * Sends the results and schedules the flush of a batch which is not full after the batch interval.
+     */
+    public interface Output {
+        /**
+         * A result, or a batch of them as list if batches are asked for.
+         */
+        void send(Object result);
+
+        /**
+         * {@link ResultBatcher#flushScheduled()} is to be called after the delay, unless it is cancelled before.
+         */
+        void scheduleFlush(long delayMillis);
+
+        void cancelFlush();
+    }
+
+    private final Output output;
+    private final ArrayDeque<Object> pendingResults = new ArrayDeque<>();
+    private final boolean batched;
+    private final int batchSize;
+    private final long batchInterval;
+    private final int bufferSize;
+    private long demand;
+    private boolean flushScheduled = false;
+
+    /**
+     * @param options the listen arguments of the result stream, or null for every result on its own
+     */
+    public ResultBatcher(Map<?, ?> options, Output output) {
+        this.output = output;
+        Number batchSize = options != null ? (Number) options.get(Constants.EXTRA_BATCH_SIZE) : null;
+        Number batchInterval = options != null ? (Number) options.get(Constants.EXTRA_BATCH_INTERVAL) : null;
+        Number demand = options != null ? (Number) options.get(Constants.EXTRA_DEMAND) : null;
+        Number bufferSize = options != null ? (Number) options.get(Constants.EXTRA_BUFFER_SIZE) : null;
+        this.batched = batchSize != null || batchInterval != null;
+        this.batchSize = batchSize != null ? Math.max(1, batchSize.intValue()) : batchInterval != null
+                ? Integer.MAX_VALUE : 1;
+        this.batchInterval = batchInterval != null ? Math.max(0, batchInterval.longValue()) : 0;
+        this.demand = demand != null ? Math.max(0, demand.longValue()) : Long.MAX_VALUE;
+        this.bufferSize = bufferSize != null ? Math.max(1, bufferSize.intValue()) : DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * Adds the next result, sent once its batch is full and flutter requested it.
+     *
+     * @return false if the buffer was full and the oldest result was dropped for it
+     */
+    public boolean add(Object result) {
+        pendingResults.addLast(result);
+        boolean dropped = false;
+        if (pendingResults.size() > bufferSize) {
+            // flutter is behind
+            pendingResults.removeFirst();
+            dropped = true;
+        }
+        if (pendingResults.size() >= batchSize) {
+            flush(false);
+        } else if (!flushScheduled && batchInterval > 0) {
+            flushScheduled = true;
+            output.scheduleFlush(batchInterval);
+        }
+        return !dropped;
+    }
+
+    /**
+     * Adds to the number of results flutter can take and sends the held ones it now can.
+     */
+    public void request(long results) {
+        if (demand != Long.MAX_VALUE) {
+            demand = results >= Long.MAX_VALUE - demand ? Long.MAX_VALUE : demand + Math.max(0, results);
+        }
+        flush(false);
+    }
+
+    /**
+     * Sends the waiting results flutter requested once the batch interval elapsed.
+     */
+    public void flushScheduled() {
+        flushScheduled = false;
+        flush(false);
+    }
+
+    /**
+     * Sends all waiting results, also the ones flutter did not request yet, the stream ends.
+     */
+    public void flushAll() {
+        flush(true);
+    }
+
+    /**
+     * Drops the waiting results, the stream was cancelled.
+     */
+    public void clear() {
+        pendingResults.clear();
+        cancelScheduledFlush();
+    }
+
+    private void cancelScheduledFlush() {
+        if (flushScheduled) {
+            output.cancelFlush();
+            flushScheduled = false;
+        }
+    }
+
+    private void flush(boolean all) {
+        if (pendingResults.isEmpty()) {
+            return;
+        }
+        int count = all ? pendingResults.size() : (int) Math.min(pendingResults.size(), demand);
+        if (count == 0) {
+            return;
+        }
+        if (demand != Long.MAX_VALUE) {
+            demand = Math.max(0, demand - count);
+        }
+        cancelScheduledFlush();
+        if (batched) {
+            // results held back by the demand may be more than one batch
+            while (count > 0) {
+                int size = Math.min(count, batchSize);
+                List<Object> batch = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    batch.add(pendingResults.removeFirst());
+                }
+                output.send(batch);
+                count -= size;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                output.send(pendingResults.removeFirst());
+            }
+        }
+        // the results held back by the demand are sent with the next batch or request
+    }
+}
@@ -0,0 +1,121 @@
+package io.anyline.flutter;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.anyline.plugin.ScanResult;
+import io.anyline.plugin.barcode.Barcode;
+import io.anyline.plugin.id.Identification;
+
+/**
+ * Drops the results of a continuous scan which repeat a result seen shortly before, config option
+ * "dedupWindowMillis".
+ * <p>
+ * A result is identified by its plugin id and value, barcode results by the values and formats of all their barcodes,
+ * composite results by the ones of all their plugins. A repeat
+ * within the window is dropped before it is serialized or any image is saved, and moves the window on, so a code which
+ * stays in view is reported once. Results without a comparable value (e.g. document results) are never dropped.
+ */
+public class ResultDeduplicator {
+
+    private final long windowMillis;
+    // result key to when it was seen last, ordered by that time
+    private final LinkedHashMap<String, Long> recentResults = new LinkedHashMap<>();
+
+    public ResultDeduplicator(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Records the result and tells if it repeats a recent one, called on the thread of the SDK callback.
+     *
+     * @return true if the result should be dropped
+     */
+    public synchronized boolean isRepeat(ScanResult<?> scanResult) {
+        String key = keyOf(scanResult);
+        if (key == null) {
+            return false;
+        }
+        long now = SystemClock.elapsedRealtime();
+        removeExpired(now);
+        // re-inserted, so the map stays ordered by the time a result was seen last
+        boolean repeat = recentResults.remove(key) != null;
+        recentResults.put(key, now);
+        return repeat;
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Long> seen = recentResults.values().iterator();
+        while (seen.hasNext() && now - seen.next() > windowMillis) {
+            seen.remove();
+        }
+    }
+
+    /**
+     * @return the plugin id and value of the result, or null if it has no comparable value
+     */
+    static String keyOf(ScanResult<?> scanResult) {
+        Object result = scanResult.getResult();
+        if (result instanceof Barcode) {
+            result = Collections.singletonList(result);
+        }
+        if (result instanceof Collection && isBarcodes((Collection<?>) result)) {
+            // all barcodes found in the frame (multi barcode), in any order
+            List<String> barcodeKeys = new ArrayList<>();
+            for (Object barcode : (Collection<?>) result) {
+                barcodeKeys.add(keyOf((Barcode) barcode));
+            }
+            Collections.sort(barcodeKeys);
+            StringBuilder key = new StringBuilder(scanResult.getPluginId()).append(':');
+            for (String barcodeKey : barcodeKeys) {
+                key.append(barcodeKey).append('\n');
+            }
+            return key.toString();
+        }
+        if (result instanceof Collection) {
+            // composite
+            StringBuilder key = new StringBuilder();
+            for (Object subResult : (Collection<?>) result) {
+                String subKey = subResult instanceof ScanResult ? keyOf((ScanResult<?>) subResult) : null;
+                if (subKey == null) {
+                    return null;
+                }
+                key.append(subKey).append('\n');
+            }
+            return key.toString();
+        }
+        String value;
+        if (result instanceof CharSequence || result instanceof Number) {
+            value = result.toString();
+        } else if (result instanceof Identification) {
+            Map<?, ?> data = ((Identification) result).getResultData();
+            value = data != null ? data.toString() : null;
+        } else {
+            value = null;
+        }
+        return value != null ? scanResult.getPluginId() + ":" + value : null;
+    }
+
+    private static boolean isBarcodes(Collection<?> result) {
+        if (result.isEmpty()) {
+            return false;
+        }
+        for (Object barcode : result) {
+            if (!(barcode instanceof Barcode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String keyOf(Barcode barcode) {
+        return barcode.getBarcodeFormat() + ":" + barcode.getValue();
+    }
+}
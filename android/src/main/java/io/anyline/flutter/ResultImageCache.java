@@ -0,0 +1,165 @@
+package io.anyline.flutter;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the image files written by the plugin within a size and count budget.
+ * <p>
+ * The plugin writes its images only into its own directory in the cache ({@link #getImageDirectory(Context)}), and
+ * every result image (and every document error image) is registered here. Files of earlier app runs are picked up
+ * from that directory the first time it is used, files elsewhere in the cache are never touched. If the budget is
+ * exceeded, the least recently used files are deleted, except the ones flutter pinned with
+ * {@link Constants#METHOD_PIN_RESULT_IMAGES}.
+ * The budget can be set with the "imageCache" block of the config options:
+ * <pre>
+ * "imageCache": {
+ *   "maxBytes": 104857600,
+ *   "maxFiles": 200
+ * }
+ * </pre>
+ */
+public class ResultImageCache {
+
+    private static final String TAG = ResultImageCache.class.getSimpleName();
+
+    public static final long DEFAULT_MAX_BYTES = 100 * 1024 * 1024;
+    public static final int DEFAULT_MAX_FILES = 200;
+    private static final String IMAGE_DIR = "anyline";
+    private static final String ERROR_IMAGE_DIR = "error";
+
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static int maxFiles = DEFAULT_MAX_FILES;
+
+    // path -> size, in access order
+    private static final LinkedHashMap<String, Long> files = new LinkedHashMap<>(64, 0.75f, true);
+    private static final HashSet<String> pinnedFiles = new HashSet<>();
+    private static final HashSet<String> indexedDirectories = new HashSet<>();
+    private static long totalBytes = 0;
+
+    /**
+     * The directory the result images are written to, only used by the plugin.
+     */
+    public static synchronized File getImageDirectory(Context context) {
+        return getDirectory(new File(context.getCacheDir(), IMAGE_DIR));
+    }
+
+    /**
+     * The directory the document error images are written to, within {@link #getImageDirectory(Context)}.
+     */
+    public static synchronized File getErrorImageDirectory(Context context) {
+        return getDirectory(new File(getImageDirectory(context), ERROR_IMAGE_DIR));
+    }
+
+    private static File getDirectory(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory.getAbsolutePath());
+        }
+        indexDirectory(directory);
+        return directory;
+    }
+
+    public static synchronized void setBudget(long maxBytes, int maxFiles) {
+        ResultImageCache.maxBytes = maxBytes;
+        ResultImageCache.maxFiles = maxFiles;
+        trim();
+    }
+
+    /**
+     * Registers a file written by the plugin into one of its directories and deletes the least recently used files
+     * if over budget. Files in other directories are ignored.
+     */
+    public static synchronized void register(File file) {
+        File directory = file.getParentFile();
+        if (directory == null || !indexedDirectories.contains(directory.getAbsolutePath())) {
+            Log.w(TAG, "Not an image directory of the plugin: " + file.getAbsolutePath());
+            return;
+        }
+        put(file);
+        trim();
+    }
+
+    /**
+     * Excludes the files from eviction. Only files written by the plugin can be pinned.
+     */
+    public static synchronized void pin(Collection<String> paths) {
+        for (String path : paths) {
+            if (files.get(path) != null) {
+                pinnedFiles.add(path);
+            }
+        }
+    }
+
+    /**
+     * Deletes the files, flutter does not need them anymore. Only files written by the plugin are deleted.
+     */
+    public static synchronized void release(Collection<String> paths) {
+        for (String path : paths) {
+            pinnedFiles.remove(path);
+            Long size = files.remove(path);
+            if (size != null) {
+                totalBytes -= size;
+                delete(path);
+            }
+        }
+    }
+
+    private static void indexDirectory(File directory) {
+        if (!indexedDirectories.add(directory.getAbsolutePath())) {
+            return;
+        }
+        File[] existingFiles = directory.listFiles();
+        if (existingFiles == null) {
+            return;
+        }
+        // oldest first, so they are evicted first
+        Arrays.sort(existingFiles, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                return Long.compare(file1.lastModified(), file2.lastModified());
+            }
+        });
+        for (File existingFile : existingFiles) {
+            // the error directory is indexed on its own
+            if (existingFile.isFile()) {
+                put(existingFile);
+            }
+        }
+    }
+
+    private static void put(File file) {
+        Long previousSize = files.put(file.getAbsolutePath(), file.length());
+        if (previousSize != null) {
+            totalBytes -= previousSize;
+        }
+        totalBytes += file.length();
+    }
+
+    private static void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+        while ((totalBytes > maxBytes || files.size() > maxFiles) && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (pinnedFiles.contains(entry.getKey())) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= entry.getValue();
+            delete(entry.getKey());
+        }
+    }
+
+    private static void delete(String path) {
+        if (!new File(path).delete()) {
+            Log.w(TAG, "Could not delete " + path);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.anyline.flutter;
+
+import android.graphics.Bitmap;
+
+import java.util.Set;
+
+import io.anyline.models.AnylineImage;
+import io.anyline.plugin.ScanResult;
+
+/**
+ * The images of a result, copied on the thread of the SDK callback so they can still be encoded once the callback
+ * returned and the SDK released its own.
+ * <p>
+ * Only the images the config asks for are copied, scaled down to the size they are returned with ("maxDimension"), so
+ * a result does not hold a full resolution copy it never returns. Whoever takes an image owns it, the ones which are
+ * not taken are released with {@link #release()}.
+ */
+public class ResultImages {
+
+    private AnylineImage cutoutImage;
+    private AnylineImage fullImage;
+    private final long byteCount;
+
+    private ResultImages(AnylineImage cutoutImage, AnylineImage fullImage) {
+        this.cutoutImage = cutoutImage;
+        this.fullImage = fullImage;
+        this.byteCount = byteCount(cutoutImage) + byteCount(fullImage);
+    }
+
+    /**
+     * Copies the images of the result, called on the thread of the SDK callback.
+     */
+    public static ResultImages copy(ScanConfig scanConfig, ScanResult<?> scanResult) {
+        ImageOutputPolicy imageOutput = scanConfig.getImageOutput();
+        boolean lazyImages = scanConfig.isLazyImages();
+        AnylineImage cutoutImage = scanResult.getCutoutImage();
+        AnylineImage fullImage = scanResult.getFullImage();
+        // image handles are encoded later with the size asked for then, so they keep the full resolution
+        ImageOutputPolicy scaleTo = lazyImages ? null : imageOutput;
+        return new ResultImages(
+                cutoutImage != null && imageOutput.isCutoutImage() && isWanted(scanConfig,
+                        lazyImages ? "imageHandle" : imageOutput.getCutoutImageKey())
+                        ? ImageEncoder.copy(cutoutImage, scaleTo) : null,
+                fullImage != null && imageOutput.isFullImage() && isWanted(scanConfig,
+                        lazyImages ? "fullImageHandle" : imageOutput.getFullImageKey())
+                        ? ImageEncoder.copy(fullImage, scaleTo) : null);
+    }
+
+    private static long byteCount(AnylineImage image) {
+        Bitmap bitmap = image != null ? image.getBitmap() : null;
+        return bitmap != null ? bitmap.getByteCount() : 0;
+    }
+
+    private static boolean isWanted(ScanConfig scanConfig, String field) {
+        Set<String> resultFields = scanConfig.getResultFields();
+        return resultFields == null || resultFields.contains(field);
+    }
+
+    /**
+     * The bytes of the copies, for the bound of the {@link ResultProcessor}.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the cutout image, now owned by the caller, or null
+     */
+    public synchronized AnylineImage takeCutoutImage() {
+        AnylineImage image = cutoutImage;
+        cutoutImage = null;
+        return image;
+    }
+
+    /**
+     * @return the full image, now owned by the caller, or null
+     */
+    public synchronized AnylineImage takeFullImage() {
+        AnylineImage image = fullImage;
+        fullImage = null;
+        return image;
+    }
+
+    /**
+     * Releases the images which were not taken, e.g. if the result is dropped.
+     */
+    public synchronized void release() {
+        if (cutoutImage != null) {
+            cutoutImage.release();
+            cutoutImage = null;
+        }
+        if (fullImage != null) {
+            fullImage.release();
+            fullImage = null;
+        }
+    }
+}
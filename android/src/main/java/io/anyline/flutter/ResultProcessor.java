@@ -0,0 +1,380 @@
+package io.anyline.flutter;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes the results of a scan one after the other on its own thread, in the order they were found.
+ * <p>
+ * The result listeners only hand the raw result over, so the SDK can go on with the next frame while the result is
+ * serialized and its images are encoded. The queue is bounded; what happens to a result which does not fit anymore is
+ * defined by the {@link OverflowPolicy}, config options "resultQueue": {"capacity": 8, "overflow": "dropOldest"}.
+ * The images copied for the results are bounded as well ("maxBytes"): the results waiting and the one in progress may
+ * hold that many bytes, a result beyond is handled like one which does not fit into the queue. A single result is
+ * always accepted, however large. The final result of a scan (cancelOnResult) is never dropped, the scanner waits for
+ * room for it in the queue instead, its bytes are not bounded.
+ * <p>
+ * The parts of a result which are independent of each other, like the results of the plugins of a composite, can be
+ * serialized in parallel with {@link #invokeAll(List)}.
+ */
+public class ResultProcessor {
+
+    private static final String TAG = ResultProcessor.class.getSimpleName();
+
+    public static final int DEFAULT_CAPACITY = 8;
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    private static final int MAX_PARALLEL_SERIALIZATIONS = 4;
+
+    public enum OverflowPolicy {
+        /**
+         * The oldest waiting result is dropped, the scanner never waits.
+         */
+        DROP_OLDEST,
+        /**
+         * The new result is dropped, the scanner never waits.
+         */
+        DROP_NEWEST,
+        /**
+         * The scanner waits until there is room in the queue (and for the bytes), no result is dropped.
+         */
+        BLOCK;
+
+        /**
+         * @param policy "dropOldest", "dropNewest" or "block"
+         * @return the policy, DROP_OLDEST if it is unknown
+         */
+        public static OverflowPolicy fromConfig(String policy) {
+            if ("dropNewest".equals(policy)) {
+                return DROP_NEWEST;
+            } else if ("block".equals(policy)) {
+                return BLOCK;
+            }
+            return DROP_OLDEST;
+        }
+    }
+
+    /**
+     * A queued result with what releases its resources (e.g. copied images) if it is dropped instead of processed.
+     */
+    private static class QueuedResult {
+        final Runnable result;
+        final long bytes;
+        final boolean isFinal;
+        final Runnable discard;
+        // the bytes counted in heldBytes for it, 0 until it is accepted and again once it is done
+        long heldBytes = 0;
+
+        QueuedResult(Runnable result, long bytes, boolean isFinal, Runnable discard) {
+            this.result = result;
+            this.bytes = bytes;
+            this.isFinal = isFinal;
+            this.discard = discard;
+        }
+    }
+
+    private final LinkedBlockingDeque<QueuedResult> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final long maxBytes;
+    // the bytes of the results waiting and in progress, guarded by bytesLock
+    private long heldBytes = 0;
+    private final Object bytesLock = new Object();
+    private final AtomicInteger droppedCount = new AtomicInteger();
+    private final Thread worker;
+    private final ThreadPoolExecutor serializerPool = createSerializerPool();
+    private volatile boolean shutdown = false;
+
+    /**
+     * How many tasks {@link #invokeAll(List)} runs in parallel at most.
+     */
+    public static int getParallelism() {
+        return Math.min(MAX_PARALLEL_SERIALIZATIONS, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static ThreadPoolExecutor createSerializerPool() {
+        int poolSize = getParallelism();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "AnylineResultSerializer");
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public ResultProcessor(int capacity, OverflowPolicy overflowPolicy, long maxBytes) {
+        this.queue = new LinkedBlockingDeque<>(Math.max(1, capacity));
+        this.overflowPolicy = overflowPolicy;
+        this.maxBytes = maxBytes;
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processResults();
+            }
+        }, "AnylineResultProcessor");
+        worker.start();
+    }
+
+    /**
+     * Drops a result before it is prepared (e.g. its images copied) if it would be dropped anyway, i.e. with
+     * {@link OverflowPolicy#DROP_NEWEST} while the queue or the bytes are full. Called on the thread of the SDK callback.
+     *
+     * @param isFinal if the scan ends with this result, it is never dropped
+     * @return true if the result was dropped
+     */
+    public boolean dropIfFull(boolean isFinal) {
+        if (isFinal || overflowPolicy != OverflowPolicy.DROP_NEWEST) {
+            return false;
+        }
+        boolean full;
+        synchronized (bytesLock) {
+            full = queue.remainingCapacity() == 0 || (heldBytes > 0 && heldBytes >= maxBytes);
+        }
+        if (full) {
+            logDropped();
+        }
+        return full;
+    }
+
+    /**
+     * Queues the processing of a result, called on the thread of the SDK callback.
+     *
+     * @param result  processes the result
+     * @param bytes   the bytes held by the result until it is processed, e.g. of its copied images
+     * @param isFinal if the scan ends with this result, it is never dropped
+     * @param discard releases what the result holds if it is dropped or the processor is shut down, or null
+     * @return false if the result was dropped
+     */
+    public boolean submit(Runnable result, long bytes, boolean isFinal, Runnable discard) {
+        QueuedResult queuedResult = new QueuedResult(result, bytes, isFinal, discard);
+        if (shutdown) {
+            discard(queuedResult);
+            return false;
+        }
+        boolean queued;
+        if (isFinal) {
+            holdBytes(queuedResult);
+            queued = putLast(queuedResult);
+        } else {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    queued = awaitBytes(queuedResult) && putLast(queuedResult);
+                    break;
+                case DROP_NEWEST:
+                    queued = tryHoldBytes(queuedResult) && queue.offerLast(queuedResult);
+                    break;
+                default:
+                    // the worker may take a result in between, so the oldest is only dropped while the queue (or the
+                    // bytes) are full
+                    while (!(queued = tryHoldBytes(queuedResult) && queue.offerLast(queuedResult))) {
+                        releaseBytes(queuedResult);
+                        QueuedResult oldest = pollOldestDroppable();
+                        if (oldest != null) {
+                            onDropped(oldest);
+                        } else if (queue.remainingCapacity() == 0 || !fitsBytes(queuedResult)) {
+                            // only final results (or the one in progress) hold the room
+                            break;
+                        }
+                    }
+                    break;
+            }
+        }
+        if (!queued) {
+            onDropped(queuedResult);
+        } else if (shutdown && queue.removeLastOccurrence(queuedResult)) {
+            // shut down meanwhile, the worker does not take it anymore
+            discard(queuedResult);
+            queued = false;
+        }
+        return queued;
+    }
+
+    private boolean fitsBytes(QueuedResult queuedResult) {
+        synchronized (bytesLock) {
+            // a single result is always accepted
+            return heldBytes == 0 || heldBytes + queuedResult.bytes <= maxBytes;
+        }
+    }
+
+    private void holdBytes(QueuedResult queuedResult) {
+        synchronized (bytesLock) {
+            heldBytes += queuedResult.bytes;
+            queuedResult.heldBytes = queuedResult.bytes;
+        }
+    }
+
+    private boolean tryHoldBytes(QueuedResult queuedResult) {
+        synchronized (bytesLock) {
+            if (!fitsBytes(queuedResult)) {
+                return false;
+            }
+            holdBytes(queuedResult);
+            return true;
+        }
+    }
+
+    /**
+     * Waits until the bytes of the result fit, for {@link OverflowPolicy#BLOCK}.
+     *
+     * @return false if interrupted or shut down meanwhile
+     */
+    private boolean awaitBytes(QueuedResult queuedResult) {
+        synchronized (bytesLock) {
+            while (!fitsBytes(queuedResult)) {
+                if (shutdown) {
+                    return false;
+                }
+                try {
+                    bytesLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            holdBytes(queuedResult);
+            return true;
+        }
+    }
+
+    private void releaseBytes(QueuedResult queuedResult) {
+        synchronized (bytesLock) {
+            if (queuedResult.heldBytes == 0) {
+                return;
+            }
+            heldBytes -= queuedResult.heldBytes;
+            queuedResult.heldBytes = 0;
+            bytesLock.notifyAll();
+        }
+    }
+
+    private boolean putLast(QueuedResult queuedResult) {
+        try {
+            queue.putLast(queuedResult);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return the oldest waiting result which is not final, or null if there is none
+     */
+    private QueuedResult pollOldestDroppable() {
+        for (QueuedResult waiting : queue) {
+            // the worker may have taken it meanwhile
+            if (!waiting.isFinal && queue.removeFirstOccurrence(waiting)) {
+                return waiting;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the tasks in parallel on a bounded pool and waits for all of them, called while processing a result.
+     *
+     * @return the results of the tasks in the order of the tasks, null for a task which failed
+     * @throws InterruptedException if the processor is shut down meanwhile
+     */
+    public <T> List<T> invokeAll(List<Callable<T>> tasks) throws InterruptedException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1) {
+            // nothing to run in parallel
+            try {
+                results.add(tasks.get(0).call());
+            } catch (Exception e) {
+                Log.e(TAG, "Exception is: ", e);
+                results.add(null);
+            }
+            return results;
+        }
+        for (Future<T> task : serializerPool.invokeAll(tasks)) {
+            try {
+                results.add(task.get());
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Exception is: ", e.getCause());
+                results.add(null);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The number of results waiting to be processed, not counting the one in progress.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * The number of results dropped because the queue (or the bytes) were full.
+     */
+    public int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Drops the waiting results and stops the worker once the result in progress is processed.
+     */
+    public void shutdown() {
+        shutdown = true;
+        QueuedResult waiting;
+        while ((waiting = queue.pollFirst()) != null) {
+            discard(waiting);
+        }
+        worker.interrupt();
+        serializerPool.shutdown();
+        synchronized (bytesLock) {
+            // results waiting for the bytes are dropped
+            bytesLock.notifyAll();
+        }
+    }
+
+    private void onDropped(QueuedResult queuedResult) {
+        logDropped();
+        discard(queuedResult);
+    }
+
+    private void logDropped() {
+        Log.w(TAG, "Result queue is full, dropped a result (" + droppedCount.incrementAndGet() + " so far).");
+    }
+
+    private void discard(QueuedResult queuedResult) {
+        releaseBytes(queuedResult);
+        if (queuedResult.discard != null) {
+            queuedResult.discard.run();
+        }
+    }
+
+    private void processResults() {
+        while (!shutdown) {
+            QueuedResult queuedResult;
+            try {
+                queuedResult = queue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                queuedResult.result.run();
+            } catch (RuntimeException e) {
+                // a failing result must not stop the ones after it
+                Log.e(TAG, "Exception is: ", e);
+            } finally {
+                releaseBytes(queuedResult);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.anyline.flutter;
+
+import org.json.JSONException;
+
+import io.anyline.plugin.ScanResult;
+
+/**
+ * Writes the type specific fields of a scan result into the open result object. The images, outline and confidence
+ * are added by {@link AnylinePluginHelper#jsonHelper}.
+ *
+ * @see ResultSerializers#register(Class, ResultSerializer)
+ */
+public interface ResultSerializer {
+
+    void serialize(ScanResult<?> scanResult, ResultWriter writer) throws JSONException;
+}
@@ -0,0 +1,168 @@
+package io.anyline.flutter;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.anyline.plugin.ScanResult;
+import io.anyline.plugin.barcode.BarcodeScanResult;
+import io.anyline.plugin.id.DrivingLicenseIdentification;
+import io.anyline.plugin.id.GermanIdFrontIdentification;
+import io.anyline.plugin.id.Identification;
+import io.anyline.plugin.id.MrzIdentification;
+import io.anyline.plugin.licenseplate.LicensePlateScanResult;
+import io.anyline.plugin.meter.MeterScanResult;
+import io.anyline.plugin.ocr.OcrScanResult;
+
+/**
+ * The {@link ResultSerializer}s by result class.
+ * <p>
+ * A serializer is looked up by the class of the scan result first (e.g. {@link MeterScanResult}), then by the class of
+ * its payload (e.g. {@link MrzIdentification} for ID results). The most specific registered class wins. The resolved
+ * serializer is cached per class, so after the first result of a type the lookup is a single map access.
+ * Apps can register serializers for further result types or replace the default ones.
+ */
+public class ResultSerializers {
+
+    private static final ResultSerializer NONE = new ResultSerializer() {
+        @Override
+        public void serialize(ScanResult<?> scanResult, ResultWriter writer) {
+        }
+    };
+
+    private static final Map<Class<?>, ResultSerializer> registered = new LinkedHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, ResultSerializer> resolved = new ConcurrentHashMap<>();
+
+    static {
+        register(LicensePlateScanResult.class, new ResultSerializer() {
+            @Override
+            public void serialize(ScanResult<?> scanResult, ResultWriter writer) {
+                writer.name("country").value(((LicensePlateScanResult) scanResult).getCountry());
+                writer.name("licensePlate").value((String) scanResult.getResult());
+            }
+        });
+        // the SDK only provides the ID results as JSONObject
+        register(MrzIdentification.class, new ResultSerializer() {
+            @Override
+            public void serialize(ScanResult<?> scanResult, ResultWriter writer) throws JSONException {
+                if (isIdWanted(writer)) {
+                    writeFields(((MrzIdentification) scanResult.getResult()).toJSONObject(), writer);
+                }
+            }
+        });
+        register(DrivingLicenseIdentification.class, new ResultSerializer() {
+            @Override
+            public void serialize(ScanResult<?> scanResult, ResultWriter writer) throws JSONException {
+                if (isIdWanted(writer)) {
+                    writeFields(((DrivingLicenseIdentification) scanResult.getResult()).toJSONObject(), writer);
+                }
+            }
+        });
+        register(GermanIdFrontIdentification.class, new ResultSerializer() {
+            @Override
+            public void serialize(ScanResult<?> scanResult, ResultWriter writer) throws JSONException {
+                if (isIdWanted(writer)) {
+                    writeFields(((GermanIdFrontIdentification) scanResult.getResult()).toJSONObject(), writer);
+                }
+            }
+        });
+        // universal ID
+        register(Identification.class, new ResultSerializer() {
+            @Override
+            public void serialize(ScanResult<?> scanResult, ResultWriter writer) throws JSONException {
+                Map<?, ?> data = ((Identification) scanResult.getResult()).getResultData();
+                if (data != null) {
+                    for (Map.Entry<?, ?> entry : data.entrySet()) {
+                        writer.name(String.valueOf(entry.getKey())).json(entry.getValue());
+                    }
+                }
+            }
+        });
+        register(OcrScanResult.class, new ResultSerializer() {
+            @Override
+            public void serialize(ScanResult<?> scanResult, ResultWriter writer) {
+                writer.name("text").value(((OcrScanResult) scanResult).getResult().trim());
+            }
+        });
+        register(BarcodeScanResult.class, new ResultSerializer() {
+            @Override
+            public void serialize(ScanResult<?> scanResult, ResultWriter writer) throws JSONException {
+                writer.name("value").json(scanResult.getResult());
+            }
+        });
+        register(MeterScanResult.class, new ResultSerializer() {
+            @Override
+            public void serialize(ScanResult<?> scanResult, ResultWriter writer) throws JSONException {
+                AnylinePluginHelper.writeMeterScanMode(((MeterScanResult) scanResult).getScanMode(), writer);
+                writer.name("reading").json(scanResult.getResult());
+            }
+        });
+    }
+
+    // the fields of an ID are only known once it is converted, so it is only converted if the config asks for a field
+    // other than the common ones
+    private static boolean isIdWanted(ResultWriter writer) {
+        return !(writer instanceof ProjectingResultWriter)
+                || ((ProjectingResultWriter) writer).isWantedOtherThan(AnylinePluginHelper.COMMON_FIELDS);
+    }
+
+    private static void writeFields(JSONObject jsonObject, ResultWriter writer) throws JSONException {
+        Iterator<String> keys = jsonObject.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            writer.name(key).json(jsonObject.opt(key));
+        }
+    }
+
+    /**
+     * Registers a serializer for a scan result class or a result payload class (and their subclasses).
+     */
+    public static void register(Class<?> resultClass, ResultSerializer serializer) {
+        synchronized (registered) {
+            registered.put(resultClass, serializer);
+            resolved.clear();
+        }
+    }
+
+    /**
+     * @return the serializer of the result, or null if there is none
+     */
+    public static ResultSerializer get(ScanResult<?> scanResult) {
+        ResultSerializer serializer = get(scanResult.getClass());
+        if (serializer == NONE && scanResult.getResult() != null) {
+            serializer = get(scanResult.getResult().getClass());
+        }
+        return serializer != NONE ? serializer : null;
+    }
+
+    private static ResultSerializer get(Class<?> resultClass) {
+        ResultSerializer serializer = resolved.get(resultClass);
+        if (serializer == null) {
+            serializer = resolve(resultClass);
+            resolved.put(resultClass, serializer);
+        }
+        return serializer;
+    }
+
+    private static ResultSerializer resolve(Class<?> resultClass) {
+        synchronized (registered) {
+            // the closest registered superclass, then the registered interfaces
+            for (Class<?> c = resultClass; c != null; c = c.getSuperclass()) {
+                ResultSerializer serializer = registered.get(c);
+                if (serializer != null) {
+                    return serializer;
+                }
+            }
+            for (Map.Entry<Class<?>, ResultSerializer> entry : registered.entrySet()) {
+                if (entry.getKey().isAssignableFrom(resultClass)) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return NONE;
+    }
+}
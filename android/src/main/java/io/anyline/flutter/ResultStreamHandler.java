@@ -0,0 +1,132 @@
+package io.anyline.flutter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.Map;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Delivers the results of a running scan to flutter over the {@link Constants#EVENT_CHANNEL_RESULTS} channel.
+ * <p>
+ * Every result (also the non-final ones of a scan with cancelOnResult = false) is sent as an event, the stream
+ * ends when the scan activity is finished, cancelled or failed. Results can be reported from any thread, the
+ * events are always sent on the main thread.
+ * <p>
+ * The listen arguments can group the results into batches, sent as list once {@link Constants#EXTRA_BATCH_SIZE}
+ * results are waiting or {@link Constants#EXTRA_BATCH_INTERVAL} milliseconds after the first one. With
+ * {@link Constants#EXTRA_DEMAND} only as many results are sent as flutter requested
+ * ({@link Constants#METHOD_REQUEST_RESULTS}), the others are held, at most {@link Constants#EXTRA_BUFFER_SIZE} of them
+ * (the oldest are dropped). Held results are all sent when the stream ends. The batches are formed by the
+ * {@link ResultBatcher}.
+ */
+public class ResultStreamHandler implements EventChannel.StreamHandler, ResultBatcher.Output {
+
+    private static final String TAG = ResultStreamHandler.class.getSimpleName();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // only used on the main thread, null while no one listens
+    private EventChannel.EventSink eventSink;
+    private ResultBatcher resultBatcher;
+
+    private final Runnable scheduledFlush = new Runnable() {
+        @Override
+        public void run() {
+            if (resultBatcher != null) {
+                resultBatcher.flushScheduled();
+            }
+        }
+    };
+
+    @Override
+    public void onListen(Object arguments, EventChannel.EventSink events) {
+        if (resultBatcher != null) {
+            resultBatcher.clear();
+        }
+        eventSink = events;
+        resultBatcher = new ResultBatcher(arguments instanceof Map ? (Map<?, ?>) arguments : null, this);
+    }
+
+    @Override
+    public void onCancel(Object arguments) {
+        eventSink = null;
+        if (resultBatcher != null) {
+            resultBatcher.clear();
+            resultBatcher = null;
+        }
+    }
+
+    public void sendResult(final Object result) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (eventSink != null && !resultBatcher.add(result)) {
+                    Log.w(TAG, "Result buffer is full, dropped the oldest result.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds to the number of results flutter can take and sends the held ones it now can.
+     */
+    public void request(final long results) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (eventSink != null) {
+                    resultBatcher.request(results);
+                }
+            }
+        });
+    }
+
+    public void sendErrorAndEnd(final String errorCode, final String errorMessage) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (eventSink != null) {
+                    resultBatcher.flushAll();
+                    eventSink.error(errorCode, errorMessage, null);
+                    endOfStream();
+                }
+            }
+        });
+    }
+
+    public void end() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (eventSink != null) {
+                    resultBatcher.flushAll();
+                    endOfStream();
+                }
+            }
+        });
+    }
+
+    private void endOfStream() {
+        eventSink.endOfStream();
+        eventSink = null;
+        resultBatcher.clear();
+        resultBatcher = null;
+    }
+
+    @Override
+    public void send(Object result) {
+        eventSink.success(result);
+    }
+
+    @Override
+    public void scheduleFlush(long delayMillis) {
+        mainHandler.postDelayed(scheduledFlush, delayMillis);
+    }
+
+    @Override
+    public void cancelFlush() {
+        mainHandler.removeCallbacks(scheduledFlush);
+    }
+}
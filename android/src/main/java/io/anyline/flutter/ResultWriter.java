@@ -0,0 +1,63 @@
+package io.anyline.flutter;
+
+import org.json.JSONException;
+
+/**
+ * Writes a result straight into its transport format, without building a JSONObject tree first.
+ * <p>
+ * A writer is reused for the results of a scan: {@link #reset()} starts a new result, {@link #result()} returns the
+ * finished one, which is what {@link ResultReporter#onResult(Object, boolean)} reports.
+ *
+ * @see JsonResultWriter
+ * @see MapResultWriter
+ */
+public interface ResultWriter {
+
+    /**
+     * @return if the field is put into the result, false if it can be skipped (see {@link ProjectingResultWriter})
+     */
+    boolean isWanted(String name);
+
+    ResultWriter reset();
+
+    ResultWriter beginObject();
+
+    ResultWriter endObject();
+
+    ResultWriter beginArray();
+
+    ResultWriter endArray();
+
+    ResultWriter name(String name);
+
+    ResultWriter value(String value);
+
+    ResultWriter value(boolean value);
+
+    ResultWriter value(long value);
+
+    ResultWriter value(double value) throws JSONException;
+
+    /**
+     * Writes a list of numbers, sent as Float64List in structured results.
+     */
+    ResultWriter value(double[] values) throws JSONException;
+
+    /**
+     * Writes encoded image bytes.
+     */
+    ResultWriter value(byte[] value);
+
+    ResultWriter nullValue();
+
+    /**
+     * Writes a value of another source, e.g. a JSONObject the SDK returns: strings, numbers, booleans, JSONObject,
+     * JSONArray, maps and collections of them.
+     */
+    ResultWriter json(Object value) throws JSONException;
+
+    /**
+     * @return the finished result
+     */
+    Object result();
+}
@@ -0,0 +1,550 @@
+package io.anyline.flutter;
+
+import android.graphics.Color;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.anyline.camera.CameraConfig;
+import io.anyline.camera.CameraFeatures;
+import io.anyline.plugin.barcode.BarcodeFormat;
+
+/**
+ * Immutable, compiled form of the config json passed from flutter.
+ * <p>
+ * The config string is parsed once per scan (or once per {@link Constants#METHOD_INIT_ANYLINE}) and cached by its
+ * content, so the plugin and the scan activities all read the typed fields from the same instance.
+ * The {@link #getOptions()} object is handed to the SDK and must not be modified.
+ */
+public class ScanConfig {
+
+    public enum PluginKind {
+        VIEW_PLUGIN,
+        DOCUMENT,
+        COMPOSITE
+    }
+
+    private static final String TAG = ScanConfig.class.getSimpleName();
+
+    private static final int CACHE_SIZE = 4;
+
+    private static final Map<String, ScanConfig> cache = new LinkedHashMap<String, ScanConfig>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ScanConfig> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final String licenseKey;
+    private final JSONObject options;
+    private final PluginKind pluginKind;
+    private final boolean cancelOnResult;
+    private final Boolean reportingEnabled;
+    private final String cropAndTransformErrorMessage;
+
+    private final CameraFeatures.FocusMode focusMode;
+    private final Integer focusInterval;
+    private final Boolean focusTouchEnabled;
+    private final Boolean focusRegionEnabled;
+    private final Boolean autoExposureRegionEnabled;
+
+    private final String labelText;
+    private final Integer labelColor;
+    private final Float labelSize;
+
+    private final AnylineUIConfig segmentConfig;
+    private final List<String> ocrLanguageAssets;
+    private final boolean nativeBarcodeEnabled;
+    private final int nativeBarcodeMinFrames;
+    private final List<BarcodeFormat> nativeBarcodeFormats;
+    private final int nativeBarcodeFrameInterval;
+    private final double nativeBarcodeMaxRate;
+    private final boolean deferredImages;
+    private final boolean lazyImages;
+    private final boolean flatOutline;
+    private final boolean incrementalComposite;
+    private final long dedupWindowMillis;
+    private final boolean scanTraceLog;
+    private final Set<String> resultFields;
+    private final long imageHandleTimeout;
+    private final ImageOutputPolicy imageOutput;
+    private final long imageCacheMaxBytes;
+    private final int imageCacheMaxFiles;
+    private final int resultQueueCapacity;
+    private final ResultProcessor.OverflowPolicy resultQueueOverflow;
+    private final long resultQueueMaxBytes;
+
+    private final Boolean manualCaptureEnabled;
+    private final Integer manualCaptureButtonColor;
+
+    /**
+     * Returns the compiled config for the given config json, parsing it only if it is not cached yet.
+     *
+     * @param configJson the full config json (license and options)
+     * @return the compiled config
+     * @throws JSONException if the json is malformed or does not contain a valid plugin
+     */
+    public static ScanConfig get(String configJson) throws JSONException {
+        if (configJson == null) {
+            throw new JSONException("No config provided.");
+        }
+        synchronized (cache) {
+            ScanConfig scanConfig = cache.get(configJson);
+            if (scanConfig != null) {
+                return scanConfig;
+            }
+        }
+        ScanConfig scanConfig;
+        try {
+            scanConfig = new ScanConfig(new JSONObject(configJson));
+        } catch (IllegalArgumentException e) {
+            // invalid colors or numbers
+            throw new JSONException(e.getMessage());
+        }
+        synchronized (cache) {
+            cache.put(configJson, scanConfig);
+        }
+        return scanConfig;
+    }
+
+    private ScanConfig(JSONObject config) throws JSONException {
+        licenseKey = config.get("license").toString();
+        options = config.getJSONObject("options");
+        pluginKind = parsePluginKind(options);
+
+        // with cancelOnResult = false all results are reported to the result stream, the scan ends on cancel
+        JSONObject viewPluginConfig = options.optJSONObject("viewPlugin");
+        if (viewPluginConfig == null) {
+            viewPluginConfig = options.optJSONObject("serialViewPluginComposite");
+        }
+        if (viewPluginConfig == null) {
+            viewPluginConfig = options.optJSONObject("parallelViewPluginComposite");
+        }
+        cancelOnResult = viewPluginConfig == null || viewPluginConfig.optBoolean("cancelOnResult", true);
+
+        reportingEnabled = options.has("reportingEnabled") ? options.optBoolean("reportingEnabled", true) : null;
+        cropAndTransformErrorMessage = options.optString("cropAndTransformErrorMessage", null);
+
+        JSONObject focus = options.optJSONObject("focus");
+        if (focus != null) {
+            focusMode = parseFocusMode(focus.optString("mode"));
+            focusInterval = focus.has("interval") ? focus.getInt("interval") : null;
+            focusTouchEnabled = focus.has("touchEnabled") ? focus.getBoolean("touchEnabled") : null;
+            focusRegionEnabled = focus.has("regionEnabled") ? focus.getBoolean("regionEnabled") : null;
+            autoExposureRegionEnabled = focus.has("autoExposureRegionEnabled")
+                    ? focus.getBoolean("autoExposureRegionEnabled") : null;
+        } else {
+            focusMode = null;
+            focusInterval = null;
+            focusTouchEnabled = null;
+            focusRegionEnabled = null;
+            autoExposureRegionEnabled = null;
+        }
+
+        JSONObject label = options.optJSONObject("label");
+        if (label != null) {
+            labelText = label.optString("text");
+            labelColor = parseColor(label, "color");
+            labelSize = parseSize(label, "size");
+        } else {
+            labelText = null;
+            labelColor = null;
+            labelSize = null;
+        }
+
+        segmentConfig = options.has(AnylineUIConfig.SEGMENT) ? new AnylineUIConfig(options) : null;
+        ocrLanguageAssets = parseLanguages(options);
+        nativeBarcodeEnabled = options.optBoolean("nativeBarcodeEnabled",
+                config.optBoolean("nativeBarcodeEnabled", false));
+        nativeBarcodeMinFrames = Math.max(1, options.optInt("nativeBarcodeMinFrames", 1));
+        nativeBarcodeFormats = parseBarcodeFormats(options.optJSONArray("nativeBarcodeFormats"));
+        nativeBarcodeFrameInterval = Math.max(1, options.optInt("nativeBarcodeFrameInterval", 1));
+        nativeBarcodeMaxRate = options.optDouble("nativeBarcodeMaxRate", 0);
+
+        deferredImages = "deferred".equals(options.optString("imageDelivery"));
+        lazyImages = "lazy".equals(options.optString("imageDelivery"));
+        flatOutline = "flat".equals(options.optString("outlineFormat"));
+        incrementalComposite = "incremental".equals(options.optString("compositeDelivery"));
+        dedupWindowMillis = Math.max(0, options.optLong("dedupWindowMillis", 0));
+        scanTraceLog = "log".equals(options.optString("scanTrace"));
+        resultFields = parseResultFields(config.optJSONArray("resultFields") != null
+                ? config.optJSONArray("resultFields") : options.optJSONArray("resultFields"));
+        imageHandleTimeout = options.optLong("imageHandleTimeout", ImageHandles.DEFAULT_TIMEOUT_MILLIS);
+        imageOutput = new ImageOutputPolicy(options.optJSONObject("imageOutput"));
+        JSONObject imageCache = options.optJSONObject("imageCache");
+        if (imageCache == null) {
+            imageCache = new JSONObject();
+        }
+        imageCacheMaxBytes = imageCache.optLong("maxBytes", ResultImageCache.DEFAULT_MAX_BYTES);
+        imageCacheMaxFiles = imageCache.optInt("maxFiles", ResultImageCache.DEFAULT_MAX_FILES);
+        JSONObject resultQueue = options.optJSONObject("resultQueue");
+        if (resultQueue == null) {
+            resultQueue = new JSONObject();
+        }
+        resultQueueCapacity = Math.max(1, resultQueue.optInt("capacity", ResultProcessor.DEFAULT_CAPACITY));
+        resultQueueOverflow = ResultProcessor.OverflowPolicy.fromConfig(resultQueue.optString("overflow"));
+        resultQueueMaxBytes = resultQueue.optLong("maxBytes", ResultProcessor.DEFAULT_MAX_BYTES);
+
+        JSONObject manualCaptureButton = null;
+        JSONObject document = options.optJSONObject("document");
+        if (document != null) {
+            manualCaptureButton = document.optJSONObject("manualCaptureButton");
+        }
+        // null leaves the button as defined in the layout
+        manualCaptureEnabled = document != null ? manualCaptureButton != null : null;
+        manualCaptureButtonColor = manualCaptureButton != null ? parseColor(manualCaptureButton, "buttonColor") : null;
+    }
+
+    private static Set<String> parseResultFields(JSONArray fields) throws JSONException {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> resultFields = new HashSet<>();
+        for (int i = 0; i < fields.length(); i++) {
+            resultFields.add(fields.getString(i));
+        }
+        // deferred images are fetched with the resultId
+        if (resultFields.contains("imagePath") || resultFields.contains("fullImagePath")
+                || resultFields.contains("imageBytes") || resultFields.contains("fullImageBytes")) {
+            resultFields.add("resultId");
+        }
+        return Collections.unmodifiableSet(resultFields);
+    }
+
+    private static PluginKind parsePluginKind(JSONObject options) throws JSONException {
+        if (options.has("viewPlugin")) {
+            JSONObject viewPlugin = options.getJSONObject("viewPlugin");
+            if (!viewPlugin.has("plugin")) {
+                throw new JSONException("No Plugin in config. Please check your configuration.");
+            }
+            JSONObject plugin = viewPlugin.getJSONObject("plugin");
+            return plugin.has("documentPlugin") ? PluginKind.DOCUMENT : PluginKind.VIEW_PLUGIN;
+        } else if (options.has("serialViewPluginComposite") || options.has("parallelViewPluginComposite")) {
+            return PluginKind.COMPOSITE;
+        }
+        throw new JSONException("No ViewPlugin in config. Please check your configuration.");
+    }
+
+    /**
+     * Styling is optional, an invalid color is logged and left to the default instead of failing the scan.
+     *
+     * @return the color, or null if it is missing or invalid
+     */
+    private static Integer parseColor(JSONObject json, String key) {
+        if (!json.has(key)) {
+            return null;
+        }
+        try {
+            return Color.parseColor("#" + json.getString(key));
+        } catch (JSONException | IllegalArgumentException e) {
+            Log.e(TAG, "Exception is: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the size, or null if it is missing or invalid
+     */
+    private static Float parseSize(JSONObject json, String key) {
+        if (!json.has(key)) {
+            return null;
+        }
+        try {
+            return Float.parseFloat(json.getString(key));
+        } catch (JSONException | NumberFormatException e) {
+            Log.e(TAG, "Exception is: ", e);
+            return null;
+        }
+    }
+
+    private static CameraFeatures.FocusMode parseFocusMode(String mode) {
+        // change default focus mode to auto (works better if cutout is not in the center)
+        switch (mode) {
+            case ("AUTO"):
+            default:
+                return CameraFeatures.FocusMode.AUTO;
+            case ("MACRO"):
+                return CameraFeatures.FocusMode.MACRO;
+            case ("CONTINUOUS_PICTURE"):
+                return CameraFeatures.FocusMode.CONTINUOUS_PICTURE;
+            case ("CONTINUOUS_VIDEO"):
+                return CameraFeatures.FocusMode.CONTINUOUS_VIDEO;
+            case ("EDOF"):
+                return CameraFeatures.FocusMode.EDOF;
+            case ("FIXED"):
+                return CameraFeatures.FocusMode.FIXED;
+            case ("INFINITY"):
+                return CameraFeatures.FocusMode.INFINITY;
+            case ("OFF"):
+                return CameraFeatures.FocusMode.OFF;
+        }
+    }
+
+    /**
+     * @return the formats, or null for all formats
+     */
+    private static List<BarcodeFormat> parseBarcodeFormats(JSONArray formats) throws JSONException {
+        if (formats == null || formats.length() == 0) {
+            return null;
+        }
+        List<BarcodeFormat> barcodeFormats = new ArrayList<>(formats.length());
+        for (int i = 0; i < formats.length(); i++) {
+            // unknown formats fail with an IllegalArgumentException, reported as config error
+            barcodeFormats.add(BarcodeFormat.valueOf(formats.getString(i)));
+        }
+        return Collections.unmodifiableList(barcodeFormats);
+    }
+
+    /**
+     * Collects the traineddata assets of an OCR plugin and replaces them in the options with the plain file names,
+     * which is what the SDK expects once the files are copied.
+     */
+    private static List<String> parseLanguages(JSONObject options) throws JSONException {
+        JSONObject viewPlugin = options.optJSONObject("viewPlugin");
+        JSONObject plugin = viewPlugin != null ? viewPlugin.optJSONObject("plugin") : null;
+        JSONObject ocrScanPlugin = plugin != null ? plugin.optJSONObject("ocrPlugin") : null;
+        if (ocrScanPlugin == null) {
+            return Collections.emptyList();
+        }
+
+        JSONArray tesseractArray = ocrScanPlugin.optJSONArray("languages");
+        if (tesseractArray == null && ocrScanPlugin.has("ocrConfig")) {
+            tesseractArray = ocrScanPlugin.getJSONObject("ocrConfig").optJSONArray("languages");
+        }
+        if (tesseractArray == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> assets = new ArrayList<>(tesseractArray.length());
+        JSONArray newLanguagesArray = new JSONArray();
+        for (int i = 0; i < tesseractArray.length(); i++) {
+            String traineddataFilePath = tesseractArray.getString(i);
+            assets.add(traineddataFilePath);
+            // start after the "/" or with 0 if no fileseperator was found
+            newLanguagesArray.put(traineddataFilePath.substring(traineddataFilePath.lastIndexOf(File.separator) + 1));
+        }
+        ocrScanPlugin.put("languages", newLanguagesArray);
+        return Collections.unmodifiableList(assets);
+    }
+
+    /**
+     * Applies the focus settings of the config to the given camera config.
+     */
+    public void applyFocusConfig(CameraConfig camConfig) {
+        if (focusMode == null) {
+            return;
+        }
+        camConfig.setFocusMode(focusMode);
+        // autofocus is called in this interval (8000 is default)
+        if (focusInterval != null) {
+            camConfig.setAutoFocusInterval(focusInterval);
+        }
+        // call autofocus if view is touched (true is default)
+        if (focusTouchEnabled != null) {
+            camConfig.setFocusOnTouchEnabled(focusTouchEnabled);
+        }
+        // focus where the cutout is (true is default)
+        if (focusRegionEnabled != null) {
+            camConfig.setFocusRegionEnabled(focusRegionEnabled);
+        }
+        // automatic exposure calculation based on where the cutout is (true is default)
+        if (autoExposureRegionEnabled != null) {
+            camConfig.setAutoExposureRegionEnabled(autoExposureRegionEnabled);
+        }
+    }
+
+    public String getLicenseKey() {
+        return licenseKey;
+    }
+
+    public JSONObject getOptions() {
+        return options;
+    }
+
+    public PluginKind getPluginKind() {
+        return pluginKind;
+    }
+
+    public boolean isCancelOnResult() {
+        return cancelOnResult;
+    }
+
+    public Boolean getReportingEnabled() {
+        return reportingEnabled;
+    }
+
+    public String getCropAndTransformErrorMessage() {
+        return cropAndTransformErrorMessage;
+    }
+
+    public boolean hasLabel() {
+        return labelText != null;
+    }
+
+    public String getLabelText() {
+        return labelText;
+    }
+
+    public Integer getLabelColor() {
+        return labelColor;
+    }
+
+    public Float getLabelSize() {
+        return labelSize;
+    }
+
+    public AnylineUIConfig getSegmentConfig() {
+        return segmentConfig;
+    }
+
+    public List<String> getOcrLanguageAssets() {
+        return ocrLanguageAssets;
+    }
+
+    public boolean isNativeBarcodeEnabled() {
+        return nativeBarcodeEnabled;
+    }
+
+    /**
+     * The number of frames a native barcode has to be found in to be put into the result.
+     */
+    public int getNativeBarcodeMinFrames() {
+        return nativeBarcodeMinFrames;
+    }
+
+    /**
+     * The formats the native barcode scanner looks for, or null for all formats.
+     */
+    public List<BarcodeFormat> getNativeBarcodeFormats() {
+        return nativeBarcodeFormats;
+    }
+
+    /**
+     * Only every nth detection of the native barcode scanner is used.
+     */
+    public int getNativeBarcodeFrameInterval() {
+        return nativeBarcodeFrameInterval;
+    }
+
+    /**
+     * The maximum number of native barcode detections used per second, 0 for no limit.
+     */
+    public double getNativeBarcodeMaxRate() {
+        return nativeBarcodeMaxRate;
+    }
+
+    /**
+     * If the result is reported before its images are saved (see {@link ImageEncoder}).
+     */
+    public boolean isDeferredImages() {
+        return deferredImages;
+    }
+
+    /**
+     * If the result only contains handles of the images, which are encoded when flutter asks for them (see
+     * {@link ImageHandles}).
+     */
+    public boolean isLazyImages() {
+        return lazyImages;
+    }
+
+    /**
+     * If the outline is put into the result as flat list of the 8 coordinates (upLeft, upRight, downRight and
+     * downLeft, x before y) instead of nested points, config option "outlineFormat": "flat".
+     */
+    public boolean isFlatOutline() {
+        return flatOutline;
+    }
+
+    /**
+     * If the result of every step of a composite is reported as soon as it is found, before the result of the whole
+     * composite, config option "compositeDelivery": "incremental".
+     */
+    public boolean isIncrementalComposite() {
+        return incrementalComposite;
+    }
+
+    /**
+     * Milliseconds in which a repeated result is dropped (see {@link ResultDeduplicator}), 0 if results are not
+     * deduplicated.
+     */
+    public long getDedupWindowMillis() {
+        return dedupWindowMillis;
+    }
+
+    /**
+     * If the timing of the scan phases is logged once the scan is done (see {@link ScanTrace}), config option
+     * "scanTrace": "log".
+     */
+    public boolean isScanTraceLog() {
+        return scanTraceLog;
+    }
+
+    /**
+     * The fields of a result the app uses, config "resultFields", or null if all are put into the result. Fields
+     * which are not listed are not computed, e.g. no image is encoded if no image field is listed.
+     */
+    public Set<String> getResultFields() {
+        return resultFields;
+    }
+
+    /**
+     * Milliseconds an unused image handle is kept.
+     */
+    public long getImageHandleTimeout() {
+        return imageHandleTimeout;
+    }
+
+    public ImageOutputPolicy getImageOutput() {
+        return imageOutput;
+    }
+
+    /**
+     * The budget of the {@link ResultImageCache}.
+     */
+    public long getImageCacheMaxBytes() {
+        return imageCacheMaxBytes;
+    }
+
+    public int getImageCacheMaxFiles() {
+        return imageCacheMaxFiles;
+    }
+
+    /**
+     * The number of results the {@link ResultProcessor} keeps waiting, and what happens to the ones beyond.
+     */
+    public int getResultQueueCapacity() {
+        return resultQueueCapacity;
+    }
+
+    public ResultProcessor.OverflowPolicy getResultQueueOverflow() {
+        return resultQueueOverflow;
+    }
+
+    /**
+     * The bytes the images of the results held by the {@link ResultProcessor} may take, beyond that results are
+     * handled like in a full queue.
+     */
+    public long getResultQueueMaxBytes() {
+        return resultQueueMaxBytes;
+    }
+
+    public Boolean getManualCaptureEnabled() {
+        return manualCaptureEnabled;
+    }
+
+    public Integer getManualCaptureButtonColor() {
+        return manualCaptureButtonColor;
+    }
+}
@@ -0,0 +1,335 @@
+package io.anyline.flutter;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import io.anyline.plugin.ScanResult;
+import io.anyline.plugin.ScanResultListener;
+import io.anyline.view.AbstractBaseScanViewPlugin;
+import io.anyline.view.AbstractScanViewPluginComposite;
+import io.anyline.view.ParallelScanViewComposite;
+import io.anyline.view.SerialScanViewComposite;
+
+/**
+ * Turns the results of a scan view plugin into the results reported to flutter, for the scan activity and the
+ * embedded scan view alike.
+ * <p>
+ * The result listeners only hand the raw result over to the {@link ResultProcessor}, so the SDK is not held up by
+ * its processing. The images the config asks for are copied before (see {@link ResultImages}), the SDK may reuse its
+ * own once the listener returned. Repeats are dropped ("dedupWindowMillis"), the result is serialized with its images, projected to
+ * the "resultFields" and handed to the {@link Output} on the processing thread.
+ */
+public class ScanResultPipeline {
+
+    private static final String TAG = ScanResultPipeline.class.getSimpleName();
+
+    /**
+     * Receives the results, called on the processing thread.
+     */
+    public interface Output {
+        /**
+         * A result of the scan, finished in the writer.
+         */
+        void onResult(ResultWriter writer);
+
+        /**
+         * A composite step reported on its own, never the final result of the scan.
+         */
+        void onPartialResult(Object result);
+    }
+
+    private final Context context;
+    private final ScanConfig scanConfig;
+    private final Output output;
+    private final ResultProcessor resultProcessor;
+    // replaced for the next scan of a session, only while no result is processed
+    private volatile boolean structuredResult;
+    private volatile ScanTrace scanTrace;
+    private volatile ResultWriter resultWriter;
+    // null if results are not deduplicated
+    private volatile ResultDeduplicator resultDeduplicator;
+    // null if the scan view has no native barcode detection
+    private volatile NativeBarcodeDetection nativeBarcodeDetection;
+    // the results of the composite steps reported so far (by plugin id), only used by the resultProcessor
+    private final Map<String, Map<String, Object>> partialResults = new HashMap<>();
+
+    /**
+     * @param scanTrace the trace the phases of the results are marked in
+     */
+    public ScanResultPipeline(Context context, ScanConfig scanConfig, boolean structuredResult, ScanTrace scanTrace,
+                              Output output) {
+        this.context = context.getApplicationContext();
+        this.scanConfig = scanConfig;
+        this.output = output;
+        this.resultProcessor = new ResultProcessor(scanConfig.getResultQueueCapacity(),
+                scanConfig.getResultQueueOverflow(), scanConfig.getResultQueueMaxBytes());
+        startNextScan(structuredResult, scanTrace);
+    }
+
+    /**
+     * Adds the result listeners to the plugin, or to the composite and (with "compositeDelivery": "incremental") its
+     * plugins.
+     */
+    public void addResultListeners(AbstractBaseScanViewPlugin scanViewPlugin) {
+        if (scanViewPlugin instanceof SerialScanViewComposite || scanViewPlugin instanceof ParallelScanViewComposite) {
+            scanViewPlugin.addScanResultListener(compositeResultListener());
+            if (scanConfig.isIncrementalComposite()) {
+                for (AbstractBaseScanViewPlugin childPlugin
+                        : ((AbstractScanViewPluginComposite) scanViewPlugin).getChildViewPlugins()) {
+                    childPlugin.addScanResultListener(partialResultListener());
+                }
+            }
+        } else {
+            // the result type is dispatched by the ResultSerializers
+            scanViewPlugin.addScanResultListener(resultListener());
+        }
+    }
+
+    /**
+     * Starts over with the results of the next scan with the same scan view, e.g. the next scan of a session.
+     */
+    public void startNextScan(boolean structuredResult, ScanTrace scanTrace) {
+        this.structuredResult = structuredResult;
+        this.scanTrace = scanTrace;
+        this.resultWriter = structuredResult ? new MapResultWriter() : new JsonResultWriter();
+        this.resultDeduplicator = scanConfig.getDedupWindowMillis() > 0
+                ? new ResultDeduplicator(scanConfig.getDedupWindowMillis()) : null;
+        NativeBarcodeDetection nativeBarcodeDetection = this.nativeBarcodeDetection;
+        if (nativeBarcodeDetection != null) {
+            nativeBarcodeDetection.clearDetectedBarcodes();
+        }
+    }
+
+    /**
+     * Sets the native barcode detection of the scan view, its barcodes are added to the results.
+     */
+    public void setNativeBarcodeDetection(NativeBarcodeDetection nativeBarcodeDetection) {
+        this.nativeBarcodeDetection = nativeBarcodeDetection;
+    }
+
+    // taken right away, otherwise result from previous scan could be shown if new scan does not include barcode
+    private List<BarcodeAccumulator.DetectedBarcode> takeDetectedBarcodes() {
+        NativeBarcodeDetection nativeBarcodeDetection = this.nativeBarcodeDetection;
+        return nativeBarcodeDetection != null ? nativeBarcodeDetection.takeDetectedBarcodes()
+                : Collections.<BarcodeAccumulator.DetectedBarcode>emptyList();
+    }
+
+    public void shutdown() {
+        resultProcessor.shutdown();
+    }
+
+    private ScanResultListener compositeResultListener() {
+        return result -> {
+            scanTrace.mark(ScanTrace.RESULT_RECEIVED);
+            // only triggered if all plugins reached a result
+            if (isRepeat(result)) {
+                return;
+            }
+            final List<BarcodeAccumulator.DetectedBarcode> barcodes = takeDetectedBarcodes();
+            if (dropIfFull(scanConfig.isCancelOnResult())) {
+                return;
+            }
+            final List<ScanResult<?>> scanResults = new ArrayList<>();
+            final List<ResultImages> scanResultImages = new ArrayList<>();
+            long imageBytes = 0;
+            for (ScanResult<?> subResult : (Collection<ScanResult<?>>) result.getResult()) {
+                ResultImages subResultImages = ResultImages.copy(scanConfig, subResult);
+                scanResults.add(subResult);
+                scanResultImages.add(subResultImages);
+                imageBytes += subResultImages.getByteCount();
+            }
+            submit(() -> {
+                // the plugin results (and their images) are serialized in parallel, and put together in the order of
+                // the composite
+                List<String> pluginIds = new ArrayList<>();
+                List<Callable<Map<String, Object>>> serializations = new ArrayList<>();
+                for (int i = 0; i < scanResults.size(); i++) {
+                    final ScanResult<?> subResult = scanResults.get(i);
+                    final ResultImages subResultImages = scanResultImages.get(i);
+                    // already serialized with its images if the step was reported on its own
+                    final Map<String, Object> partialResult = partialResults.remove(subResult.getPluginId());
+                    final ResultSerializer serializer = ResultSerializers.get(subResult);
+                    if (partialResult != null) {
+                        serializations.add(() -> partialResult);
+                    } else if (serializer != null) {
+                        serializations.add(() -> serializeResult(serializer, subResult, subResultImages));
+                    } else {
+                        continue;
+                    }
+                    pluginIds.add(subResult.getPluginId());
+                }
+                partialResults.clear();
+
+                List<Map<String, Object>> subResults;
+                try {
+                    subResults = resultProcessor.invokeAll(serializations);
+                } catch (InterruptedException e) {
+                    // the scan view is gone
+                    return;
+                } finally {
+                    // the images which were not encoded, e.g. of steps already reported on their own
+                    releaseAll(scanResultImages);
+                }
+                ResultWriter resultWriter = this.resultWriter;
+                resultWriter.reset().beginObject();
+                for (int i = 0; i < pluginIds.size(); i++) {
+                    if (subResults.get(i) != null) {
+                        resultWriter.name(pluginIds.get(i));
+                        writeSerializedResult(resultWriter, subResults.get(i), barcodes);
+                    }
+                }
+                resultWriter.endObject();
+                output.onResult(resultWriter);
+            }, imageBytes, scanConfig.isCancelOnResult(), () -> releaseAll(scanResultImages));
+        };
+    }
+
+    private static void releaseAll(List<ResultImages> resultImages) {
+        for (ResultImages images : resultImages) {
+            images.release();
+        }
+    }
+
+    /**
+     * Reports the result of a composite step as {"pluginId": ..., "partial": true, "result": {...}} as soon as it is
+     * found, with "compositeDelivery": "incremental". The step is kept for the result of the whole composite, so its
+     * images are not encoded again.
+     */
+    private ScanResultListener partialResultListener() {
+        return scanResult -> {
+            // never the final result, the composite result follows
+            if (dropIfFull(false)) {
+                return;
+            }
+            final ResultImages images = ResultImages.copy(scanConfig, scanResult);
+            submit(() -> writePartialResult(scanResult, images), images.getByteCount(), false, images::release);
+        };
+    }
+
+    private void writePartialResult(ScanResult<?> scanResult, ResultImages images) {
+        ResultSerializer serializer = ResultSerializers.get(scanResult);
+        if (serializer == null) {
+            images.release();
+            return;
+        }
+        Map<String, Object> partialResult = serializeResult(serializer, scanResult, images);
+        partialResults.put(scanResult.getPluginId(), partialResult);
+
+        try {
+            ResultWriter resultWriter = this.resultWriter;
+            resultWriter.reset().beginObject()
+                    .name("pluginId").value(scanResult.getPluginId())
+                    .name("partial").value(true)
+                    .name("result").json(partialResult)
+                    .endObject();
+            output.onPartialResult(resultWriter.result());
+        } catch (JSONException e) {
+            Log.e(TAG, "Exception is: ", e);
+        }
+    }
+
+    /**
+     * Serializes a composite step on its own, without the native barcodes (only known once the composite is done).
+     */
+    private Map<String, Object> serializeResult(ResultSerializer serializer, ScanResult<?> scanResult,
+                                                ResultImages images) {
+        MapResultWriter writer = new MapResultWriter();
+        writer.beginObject();
+        writeResult(serializer, scanResult, images, Collections.<BarcodeAccumulator.DetectedBarcode>emptyList(),
+                writer);
+        writer.endObject();
+        return (Map<String, Object>) writer.result();
+    }
+
+    private void writeSerializedResult(ResultWriter resultWriter, Map<String, Object> serializedResult,
+                                       List<BarcodeAccumulator.DetectedBarcode> barcodes) {
+        try {
+            resultWriter.beginObject();
+            for (Map.Entry<String, Object> field : serializedResult.entrySet()) {
+                resultWriter.name(field.getKey()).json(field.getValue());
+            }
+            ResultWriter writer = ProjectingResultWriter.project(resultWriter, scanConfig.getResultFields());
+            if (scanConfig.isNativeBarcodeEnabled() && serializedResult.containsKey("confidence")
+                    && writer.isWanted("detectedBarcodes")) {
+                AnylinePluginHelper.writeDetectedBarcodes(barcodes, writer);
+            }
+            resultWriter.endObject();
+        } catch (JSONException e) {
+            Log.e(TAG, "Exception is: ", e);
+        }
+    }
+
+    private ScanResultListener resultListener() {
+        return scanResult -> {
+            scanTrace.mark(ScanTrace.RESULT_RECEIVED);
+            if (isRepeat(scanResult)) {
+                return;
+            }
+            final List<BarcodeAccumulator.DetectedBarcode> barcodes = takeDetectedBarcodes();
+            if (dropIfFull(scanConfig.isCancelOnResult())) {
+                return;
+            }
+            final ResultImages images = ResultImages.copy(scanConfig, scanResult);
+            submit(() -> {
+                ResultWriter resultWriter = this.resultWriter;
+                resultWriter.reset().beginObject();
+                ResultSerializer serializer = ResultSerializers.get(scanResult);
+                if (serializer != null) {
+                    writeResult(serializer, scanResult, images, barcodes, resultWriter);
+                } else {
+                    images.release();
+                }
+                resultWriter.endObject();
+                output.onResult(resultWriter);
+            }, images.getByteCount(), scanConfig.isCancelOnResult(), images::release);
+        };
+    }
+
+    // hands the result over to the resultProcessor, the state of its queue is marked in the trace
+    private void submit(Runnable result, long imageBytes, boolean isFinal, Runnable discard) {
+        resultProcessor.submit(result, imageBytes, isFinal, discard);
+        scanTrace.markQueued(resultProcessor.getQueueDepth(), resultProcessor.getDroppedCount());
+    }
+
+    // a result the resultProcessor would drop anyway is dropped before its images are copied
+    private boolean dropIfFull(boolean isFinal) {
+        if (!resultProcessor.dropIfFull(isFinal)) {
+            return false;
+        }
+        scanTrace.markQueued(resultProcessor.getQueueDepth(), resultProcessor.getDroppedCount());
+        return true;
+    }
+
+    private boolean isRepeat(ScanResult<?> scanResult) {
+        ResultDeduplicator resultDeduplicator = this.resultDeduplicator;
+        return resultDeduplicator != null && resultDeduplicator.isRepeat(scanResult);
+    }
+
+    /**
+     * Writes the fields of the result with its images into the open object of the writer.
+     */
+    private void writeResult(ResultSerializer serializer, ScanResult<?> scanResult, ResultImages images,
+                             List<BarcodeAccumulator.DetectedBarcode> barcodes, ResultWriter writer) {
+        // only the fields the config asks for are computed
+        writer = ProjectingResultWriter.project(writer, scanConfig.getResultFields());
+        try {
+            serializer.serialize(scanResult, writer);
+        } catch (Exception e) {
+            Log.e(TAG, "Exception is: ", e);
+        }
+        if (AnylinePluginHelper.jsonHelper(context, scanConfig, structuredResult, scanResult, images, barcodes,
+                writer)) {
+            scanTrace.mark(ScanTrace.IMAGES_ENCODED);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.anyline.flutter;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * The scan activity kept alive between scans, started with {@link Constants#EXTRA_SESSION}.
+ * <p>
+ * Instead of finishing after the final result, the activity of a session only stops scanning and keeps its scan
+ * view and camera while flutter is brought back to the front. The next scan with the same config brings the activity
+ * to the front again, so neither the SDK nor the camera are initialized again. The session ends with
+ * {@link Constants#METHOD_CLOSE_SESSION}, when the user leaves the scan view with back, or when a scan with another
+ * config is started. All methods are called on the main thread.
+ */
+public class ScanSession {
+
+    private static WeakReference<AnylineBaseActivity> activity;
+    private static String configJson;
+
+    static void attach(AnylineBaseActivity sessionActivity, String sessionConfigJson) {
+        activity = new WeakReference<>(sessionActivity);
+        configJson = sessionConfigJson;
+    }
+
+    static void detach(AnylineBaseActivity sessionActivity) {
+        if (activity != null && activity.get() == sessionActivity) {
+            activity = null;
+            configJson = null;
+        }
+    }
+
+    /**
+     * @return if a session is open which can scan with the config
+     */
+    public static boolean isOpen(String scanConfigJson) {
+        AnylineBaseActivity sessionActivity = activity != null ? activity.get() : null;
+        return sessionActivity != null && !sessionActivity.isFinishing() && scanConfigJson.equals(configJson);
+    }
+
+    /**
+     * Finishes the activity of the open session, which releases its camera.
+     */
+    public static void close() {
+        AnylineBaseActivity sessionActivity = activity != null ? activity.get() : null;
+        if (sessionActivity != null) {
+            sessionActivity.finish();
+            detach(sessionActivity);
+        }
+    }
+}
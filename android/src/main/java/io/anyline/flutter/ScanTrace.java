@@ -0,0 +1,217 @@
+package io.anyline.flutter;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records when the phases of a scan are reached, from the method call which started it to the result returned to
+ * flutter, on the monotonic clock ({@link SystemClock#elapsedRealtimeNanos()}).
+ * <p>
+ * Every scan has its own trace: the scan started by {@link Constants#METHOD_START_ANYLINE} (see {@link #startScan()},
+ * returned by {@link Constants#METHOD_GET_SCAN_TRACE}), and every embedded scan view (returned by its own channel).
+ * The trace is logged as one json line once the scan is done if the config asks for it ("scanTrace": "log").
+ * <p>
+ * The phases of the setup (e.g. {@link #CAMERA_OPENED}) are recorded once, the phases of a result
+ * ({@link #RESULT_RECEIVED}, {@link #RESULT_QUEUED}, {@link #IMAGES_ENCODED}, {@link #RESULT_RETURNED}) for every
+ * result, of a continuous scan only the last {@link #MAX_RESULT_SPANS}. {@link #RESULT_QUEUED} also reports the state
+ * of the {@link ResultProcessor} ("queueDepth", "droppedResults"). Marks can be set from any thread, they are ignored
+ * once the trace is finished.
+ */
+public class ScanTrace {
+
+    private static final String TAG = ScanTrace.class.getSimpleName();
+
+    public static final String METHOD_CALL = "methodCall";
+    public static final String VIEW_CREATED = "viewCreated";
+    public static final String CONFIG_PARSED = "configParsed";
+    public static final String ACTIVITY_CREATED = "activityCreated";
+    public static final String SDK_INITIALIZED = "sdkInitialized";
+    public static final String TRAINEDDATA_INSTALLED = "traineddataInstalled";
+    public static final String CAMERA_OPENED = "cameraOpened";
+    public static final String FIRST_FRAME = "firstFrame";
+    public static final String RESULT_RECEIVED = "resultReceived";
+    public static final String RESULT_QUEUED = "resultQueued";
+    public static final String IMAGES_ENCODED = "imagesEncoded";
+    public static final String RESULT_RETURNED = "resultReturned";
+
+    private static final Set<String> RESULT_PHASES = new HashSet<>(Arrays.asList(
+            RESULT_RECEIVED, RESULT_QUEUED, IMAGES_ENCODED, RESULT_RETURNED));
+
+    private static final int MAX_RESULT_SPANS = 256;
+
+    // the trace of the last scan started by METHOD_START_ANYLINE, none is recorded before
+    private static ScanTrace scan = new ScanTrace();
+
+    private final List<Span> setupSpans = new ArrayList<>();
+    private final Set<String> setupPhases = new HashSet<>();
+    // the oldest are dropped
+    private final ArrayDeque<Span> resultSpans = new ArrayDeque<>();
+    private boolean tracing;
+    private boolean log = false;
+
+    private static class Span {
+        final String phase;
+        final long timeNanos;
+        // reported with the span, or null
+        final Map<String, Object> values;
+
+        Span(String phase, long timeNanos, Map<String, Object> values) {
+            this.phase = phase;
+            this.timeNanos = timeNanos;
+            this.values = values;
+        }
+    }
+
+    private ScanTrace() {
+        tracing = false;
+    }
+
+    /**
+     * Starts a new trace with the phase which started the scan, e.g. {@link #VIEW_CREATED}.
+     */
+    public ScanTrace(String startPhase) {
+        tracing = true;
+        mark(startPhase);
+    }
+
+    /**
+     * Starts the trace of a scan started by {@link Constants#METHOD_START_ANYLINE} with {@link #METHOD_CALL}, the
+     * trace of the previous scan is dropped.
+     */
+    public static synchronized ScanTrace startScan() {
+        scan = new ScanTrace(METHOD_CALL);
+        return scan;
+    }
+
+    /**
+     * The trace of the last scan started by {@link Constants#METHOD_START_ANYLINE}, for the marks of its activity.
+     */
+    public static synchronized ScanTrace getScan() {
+        return scan;
+    }
+
+    /**
+     * Logs the trace once the scan is done, set once the config is parsed.
+     */
+    public synchronized void setLogEnabled(boolean logEnabled) {
+        log = logEnabled;
+    }
+
+    /**
+     * Records that the phase was reached now. The phases of the setup are only recorded the first time.
+     */
+    public void mark(String phase) {
+        mark(phase, null);
+    }
+
+    /**
+     * Records that a result was handed over to the result processor, with the results waiting in its queue and the
+     * ones it dropped so far.
+     */
+    public void markQueued(int queueDepth, int droppedResults) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("queueDepth", queueDepth);
+        values.put("droppedResults", droppedResults);
+        mark(RESULT_QUEUED, values);
+    }
+
+    private synchronized void mark(String phase, Map<String, Object> values) {
+        if (!tracing) {
+            return;
+        }
+        Span span = new Span(phase, SystemClock.elapsedRealtimeNanos(), values);
+        if (RESULT_PHASES.contains(phase)) {
+            if (resultSpans.size() >= MAX_RESULT_SPANS) {
+                resultSpans.removeFirst();
+            }
+            resultSpans.addLast(span);
+        } else if (setupPhases.add(phase)) {
+            setupSpans.add(span);
+        }
+    }
+
+    /**
+     * If the trace is still recorded, i.e. not finished yet.
+     */
+    public synchronized boolean isTracing() {
+        return tracing;
+    }
+
+    /**
+     * Ends the trace of the scan (the scan view was closed, failed or returned its final result), and logs it if
+     * the config asks for it. The trace is kept for {@link #getSpans()}.
+     */
+    public synchronized void finish() {
+        if (!tracing) {
+            return;
+        }
+        tracing = false;
+        if (log) {
+            try {
+                JSONArray spans = new JSONArray();
+                for (Map<String, Object> span : getSpans()) {
+                    spans.put(new JSONObject(span));
+                }
+                Log.i(TAG, new JSONObject().put("scanTrace", spans).toString());
+            } catch (JSONException e) {
+                Log.e(TAG, "Exception is: ", e);
+            }
+        }
+    }
+
+    /**
+     * The spans of the scan in the order they were reached: {"phase": ..., "elapsedMillis": since the start of the
+     * scan, "sinceLastMillis": since the phase before}, with the values reported for the phase.
+     */
+    public synchronized List<Map<String, Object>> getSpans() {
+        if (setupSpans.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> spans = new ArrayList<>(setupSpans.size() + resultSpans.size());
+        long startNanos = setupSpans.get(0).timeNanos;
+        long lastNanos = startNanos;
+        // both are in the order they were reached
+        int setupIndex = 0;
+        Iterator<Span> results = resultSpans.iterator();
+        Span result = results.hasNext() ? results.next() : null;
+        while (setupIndex < setupSpans.size() || result != null) {
+            Span span;
+            if (result == null || (setupIndex < setupSpans.size()
+                    && setupSpans.get(setupIndex).timeNanos <= result.timeNanos)) {
+                span = setupSpans.get(setupIndex++);
+            } else {
+                span = result;
+                result = results.hasNext() ? results.next() : null;
+            }
+            Map<String, Object> spanMap = new HashMap<>();
+            if (span.values != null) {
+                spanMap.putAll(span.values);
+            }
+            spanMap.put("phase", span.phase);
+            spanMap.put("elapsedMillis", toMillis(span.timeNanos - startNanos));
+            spanMap.put("sinceLastMillis", toMillis(span.timeNanos - lastNanos));
+            spans.add(spanMap);
+            lastNanos = span.timeNanos;
+        }
+        return spans;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,49 @@
+package io.anyline.flutter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts results into values the {@link io.flutter.plugin.common.StandardMessageCodec} can send as they are,
+ * so flutter receives maps, lists and numbers instead of a json string it has to decode again.
+ * <p>
+ * Used when the scan was started with {@link Constants#EXTRA_STRUCTURED_RESULT}.
+ */
+public class StructuredResult {
+
+    public static Object toStandardValue(Object value) {
+        if (value instanceof JSONObject) {
+            return toMap((JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            return toList((JSONArray) value);
+        } else if (value == JSONObject.NULL) {
+            return null;
+        }
+        // strings, numbers and booleans are supported by the codec as they are
+        return value;
+    }
+
+    public static Map<String, Object> toMap(JSONObject jsonObject) {
+        Map<String, Object> map = new HashMap<>(jsonObject.length() * 2);
+        Iterator<String> keys = jsonObject.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, toStandardValue(jsonObject.opt(key)));
+        }
+        return map;
+    }
+
+    public static List<Object> toList(JSONArray jsonArray) {
+        List<Object> list = new ArrayList<>(jsonArray.length());
+        for (int i = 0; i < jsonArray.length(); i++) {
+            list.add(toStandardValue(jsonArray.opt(i)));
+        }
+        return list;
+    }
+}
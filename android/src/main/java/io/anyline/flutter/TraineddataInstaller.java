@@ -0,0 +1,187 @@
+package io.anyline.flutter;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Installs the OCR traineddata assets (see {@link ScanConfig#getOcrLanguageAssets()}) to the directories the SDK
+ * reads them from.
+ * <p>
+ * The installed files are recorded with their size and CRC32 checksum in a manifest in
+ * anyline/module_anyline_ocr/. Assets can only change with an app update, so a file is current if the manifest entry
+ * was written by the installed app version and the file still has the recorded size. Missing files are copied in
+ * parallel. Can be called ahead of time, e.g. by {@link Constants#METHOD_INIT_ANYLINE}.
+ */
+public class TraineddataInstaller {
+
+    private static final String TAG = TraineddataInstaller.class.getSimpleName();
+
+    private static final String MODULE_DIR = "anyline/module_anyline_ocr/";
+    private static final String MANIFEST_FILE = "installed_traineddata.json";
+    private static final int MAX_PARALLEL_COPIES = 3;
+
+    // the manifest of the files dir, loaded on the first install
+    private static JSONObject manifest;
+
+    /**
+     * Installs the assets which are missing or not current, and waits until all of them are installed.
+     */
+    public static synchronized void install(List<String> traineddataAssets, Context context) throws IOException {
+        if (traineddataAssets.isEmpty()) {
+            Log.d(TAG, "No Training Data");
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        final long appUpdateTime = getAppUpdateTime(appContext);
+        if (manifest == null) {
+            manifest = readManifest(appContext);
+        }
+
+        List<String> missingAssets = new ArrayList<>();
+        for (String asset : traineddataAssets) {
+            if (!isCurrent(appContext, asset, appUpdateTime)) {
+                missingAssets.add(asset);
+            }
+        }
+        if (missingAssets.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(missingAssets.size(), MAX_PARALLEL_COPIES));
+        try {
+            List<Future<JSONObject>> copies = new ArrayList<>();
+            for (final String asset : missingAssets) {
+                copies.add(executor.submit(new Callable<JSONObject>() {
+                    @Override
+                    public JSONObject call() throws Exception {
+                        return copy(appContext, asset, appUpdateTime);
+                    }
+                }));
+            }
+            for (int i = 0; i < copies.size(); i++) {
+                manifest.put(missingAssets.get(i), copies.get(i).get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not install traineddata.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Traineddata installation was interrupted.", e);
+        } catch (JSONException e) {
+            // should not be possible
+            Log.e(TAG, "Error while putting traineddata to the manifest.", e);
+        } finally {
+            executor.shutdown();
+            // the copies recorded so far are kept even if another one failed
+            writeManifest(appContext);
+        }
+        Log.v(TAG, "Install traineddata duration: " + (System.currentTimeMillis() - start));
+    }
+
+    private static boolean isCurrent(Context context, String asset, long appUpdateTime) {
+        JSONObject entry = manifest.optJSONObject(asset);
+        return entry != null
+                && entry.optLong("appUpdateTime") == appUpdateTime
+                && getTargetFile(context, asset).length() == entry.optLong("size", -1);
+    }
+
+    private static File getTargetFile(Context context, String asset) {
+        String fileName = new File(asset).getName();
+        // .any models are read from trained_models, tesseract languages from tessdata
+        String directory = fileName.endsWith(".any") ? "trained_models" : "tessdata";
+        return new File(context.getFilesDir(), MODULE_DIR + directory + "/" + fileName);
+    }
+
+    private static JSONObject copy(Context context, String asset, long appUpdateTime) throws IOException,
+            JSONException {
+        File targetFile = getTargetFile(context, asset);
+        File parent = targetFile.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        // copied to a temporary file first, so an interrupted copy never looks installed
+        File tempFile = new File(parent, targetFile.getName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        long size = 0;
+        try (InputStream in = new CheckedInputStream(context.getAssets().open(asset), checksum);
+             ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel target = new FileOutputStream(tempFile).getChannel()) {
+            long transferred;
+            while ((transferred = target.transferFrom(source, size, 1024 * 1024)) > 0) {
+                size += transferred;
+            }
+        }
+        if (!tempFile.renameTo(targetFile)) {
+            throw new IOException("Could not install " + targetFile);
+        }
+
+        JSONObject entry = new JSONObject();
+        entry.put("size", size);
+        entry.put("checksum", Long.toHexString(checksum.getValue()));
+        entry.put("appUpdateTime", appUpdateTime);
+        return entry;
+    }
+
+    private static long getAppUpdateTime(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            // should not be possible for the own package, the files are then copied again on every start
+            return System.currentTimeMillis();
+        }
+    }
+
+    private static JSONObject readManifest(Context context) {
+        File manifestFile = new File(context.getFilesDir(), MODULE_DIR + MANIFEST_FILE);
+        if (!manifestFile.isFile()) {
+            return new JSONObject();
+        }
+        try (FileInputStream in = new FileInputStream(manifestFile)) {
+            byte[] content = new byte[(int) manifestFile.length()];
+            int offset = 0;
+            int read;
+            while (offset < content.length && (read = in.read(content, offset, content.length - offset)) > 0) {
+                offset += read;
+            }
+            return new JSONObject(new String(content, 0, offset, "UTF-8"));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Traineddata manifest could not be read, installing again.", e);
+            return new JSONObject();
+        }
+    }
+
+    private static void writeManifest(Context context) {
+        File manifestFile = new File(context.getFilesDir(), MODULE_DIR + MANIFEST_FILE);
+        manifestFile.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(manifestFile)) {
+            out.write(manifest.toString().getBytes("UTF-8"));
+        } catch (IOException e) {
+            Log.w(TAG, "Traineddata manifest could not be written.", e);
+        }
+    }
+}
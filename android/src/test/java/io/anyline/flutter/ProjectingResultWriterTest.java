@@ -0,0 +1,109 @@
+package io.anyline.flutter;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProjectingResultWriterTest {
+
+    private static Set<String> fields(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    // the writer of a result whose object is already open, the way the result listeners wrap it
+    private static MapResultWriter openResult() {
+        MapResultWriter writer = new MapResultWriter();
+        writer.beginObject();
+        return writer;
+    }
+
+    @Test
+    public void writesOnlyTheListedFields() throws JSONException {
+        MapResultWriter result = openResult();
+        ResultWriter writer = ProjectingResultWriter.project(result, fields("value", "confidence"));
+
+        writer.name("value").value("AB123");
+        writer.name("outline").beginObject().name("x").value(1).endObject();
+        writer.name("confidence").value(90);
+        writer.name("tags").beginArray().value("a").value("b").endArray();
+        result.endObject();
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("value", "AB123");
+        expected.put("confidence", 90);
+        assertEquals(expected, result.result());
+    }
+
+    @Test
+    public void writesNestedValuesOfListedFieldsAsTheyAre() throws JSONException {
+        MapResultWriter result = openResult();
+        ResultWriter writer = ProjectingResultWriter.project(result, fields("outline"));
+
+        writer.name("outline").beginObject()
+                .name("upLeft").beginObject().name("x").value(1).name("y").value(2).endObject()
+                .endObject();
+        result.endObject();
+
+        Map<String, Object> upLeft = new HashMap<>();
+        upLeft.put("x", 1);
+        upLeft.put("y", 2);
+        Map<String, Object> outline = new HashMap<>();
+        outline.put("upLeft", upLeft);
+        assertEquals(Collections.singletonMap("outline", outline), result.result());
+    }
+
+    @Test
+    public void skipsDeeplyNestedValuesOfUnlistedFields() throws JSONException {
+        MapResultWriter result = openResult();
+        ResultWriter writer = ProjectingResultWriter.project(result, fields("value"));
+
+        writer.name("details").beginObject()
+                .name("lines").beginArray().beginObject().name("value").value("x").endObject().endArray()
+                .endObject();
+        writer.name("value").value("AB123");
+        result.endObject();
+
+        assertEquals(Collections.singletonMap("value", "AB123"), result.result());
+    }
+
+    @Test
+    public void skipsJsonValuesOfUnlistedFields() throws JSONException {
+        MapResultWriter result = openResult();
+        ResultWriter writer = ProjectingResultWriter.project(result, fields("value"));
+
+        writer.name("raw").json(Collections.singletonMap("value", "x"));
+        writer.name("value").json("AB123");
+        result.endObject();
+
+        assertEquals(Collections.singletonMap("value", "AB123"), result.result());
+    }
+
+    @Test
+    public void tellsWhichFieldsAreWanted() {
+        ProjectingResultWriter writer = new ProjectingResultWriter(openResult(), fields("value", "imagePath"));
+
+        assertTrue(writer.isWanted("imagePath"));
+        assertFalse(writer.isWanted("outline"));
+        assertTrue(writer.isWantedOtherThan(AnylinePluginHelper.COMMON_FIELDS));
+        assertFalse(new ProjectingResultWriter(openResult(), fields("imagePath", "confidence"))
+                .isWantedOtherThan(AnylinePluginHelper.COMMON_FIELDS));
+    }
+
+    @Test
+    public void projectsNothingWithoutFields() {
+        MapResultWriter result = openResult();
+
+        assertSame(result, ProjectingResultWriter.project(result, null));
+    }
+}
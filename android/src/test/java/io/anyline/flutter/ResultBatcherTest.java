@@ -0,0 +1,170 @@
+package io.anyline.flutter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultBatcherTest {
+
+    private static class RecordingOutput implements ResultBatcher.Output {
+        final List<Object> sent = new ArrayList<>();
+        long scheduledDelay = 0;
+        int cancelled = 0;
+
+        @Override
+        public void send(Object result) {
+            sent.add(result);
+        }
+
+        @Override
+        public void scheduleFlush(long delayMillis) {
+            scheduledDelay = delayMillis;
+        }
+
+        @Override
+        public void cancelFlush() {
+            cancelled++;
+        }
+    }
+
+    private static Map<String, Object> options(Object... keysAndValues) {
+        Map<String, Object> options = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            options.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return options;
+    }
+
+    @Test
+    public void sendsEveryResultOnItsOwnWithoutOptions() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(null, output);
+
+        batcher.add("a");
+        batcher.add("b");
+
+        assertEquals(Arrays.<Object>asList("a", "b"), output.sent);
+        assertEquals(0, output.scheduledDelay);
+    }
+
+    @Test
+    public void sendsBatchOnceBatchSizeIsReached() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(options(Constants.EXTRA_BATCH_SIZE, 3), output);
+
+        batcher.add("a");
+        batcher.add("b");
+        assertTrue(output.sent.isEmpty());
+        batcher.add("c");
+
+        assertEquals(Arrays.<Object>asList(Arrays.asList("a", "b", "c")), output.sent);
+    }
+
+    @Test
+    public void sendsBatchAfterBatchInterval() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(options(Constants.EXTRA_BATCH_INTERVAL, 250), output);
+
+        batcher.add("a");
+        batcher.add("b");
+        assertEquals(250, output.scheduledDelay);
+        assertTrue(output.sent.isEmpty());
+        batcher.flushScheduled();
+
+        assertEquals(Arrays.<Object>asList(Arrays.asList("a", "b")), output.sent);
+    }
+
+    @Test
+    public void cancelsScheduledFlushWhenBatchIsFull() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(options(Constants.EXTRA_BATCH_SIZE, 2,
+                Constants.EXTRA_BATCH_INTERVAL, 250), output);
+
+        batcher.add("a");
+        batcher.add("b");
+
+        assertEquals(1, output.cancelled);
+        assertEquals(Arrays.<Object>asList(Arrays.asList("a", "b")), output.sent);
+    }
+
+    @Test
+    public void holdsResultsUntilRequested() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(options(Constants.EXTRA_BATCH_SIZE, 1,
+                Constants.EXTRA_DEMAND, 1), output);
+
+        batcher.add("a");
+        batcher.add("b");
+        batcher.add("c");
+        assertEquals(Arrays.<Object>asList(Arrays.asList("a")), output.sent);
+
+        batcher.request(2);
+
+        assertEquals(Arrays.<Object>asList(Arrays.asList("a"), Arrays.asList("b"), Arrays.asList("c")), output.sent);
+    }
+
+    @Test
+    public void dropsOldestResultAtBufferLimit() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(options(Constants.EXTRA_BATCH_SIZE, 1,
+                Constants.EXTRA_DEMAND, 0, Constants.EXTRA_BUFFER_SIZE, 2), output);
+
+        assertTrue(batcher.add("a"));
+        assertTrue(batcher.add("b"));
+        assertFalse(batcher.add("c"));
+        batcher.request(10);
+
+        assertEquals(Arrays.<Object>asList(Arrays.asList("b"), Arrays.asList("c")), output.sent);
+    }
+
+    @Test
+    public void splitsRequestedResultsIntoBatches() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(options(Constants.EXTRA_BATCH_SIZE, 2,
+                Constants.EXTRA_DEMAND, 0), output);
+
+        batcher.add("a");
+        batcher.add("b");
+        batcher.add("c");
+        batcher.add("d");
+        batcher.add("e");
+        batcher.request(5);
+
+        assertEquals(Arrays.<Object>asList(Arrays.asList("a", "b"), Arrays.asList("c", "d"), Arrays.asList("e")),
+                output.sent);
+    }
+
+    @Test
+    public void flushesHeldResultsAtEndOfStream() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(options(Constants.EXTRA_BATCH_SIZE, 5,
+                Constants.EXTRA_DEMAND, 0), output);
+
+        batcher.add("a");
+        batcher.add("b");
+        batcher.flushAll();
+
+        assertEquals(Arrays.<Object>asList(Arrays.asList("a", "b")), output.sent);
+    }
+
+    @Test
+    public void dropsHeldResultsWhenCleared() {
+        RecordingOutput output = new RecordingOutput();
+        ResultBatcher batcher = new ResultBatcher(options(Constants.EXTRA_BATCH_INTERVAL, 250), output);
+
+        batcher.add("a");
+        batcher.clear();
+        batcher.flushAll();
+
+        assertEquals(1, output.cancelled);
+        assertTrue(output.sent.isEmpty());
+    }
+}
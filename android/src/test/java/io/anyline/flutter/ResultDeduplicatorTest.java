@@ -0,0 +1,60 @@
+package io.anyline.flutter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import io.anyline.plugin.ScanResult;
+import io.anyline.plugin.barcode.Barcode;
+import io.anyline.plugin.barcode.BarcodeFormat;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ResultDeduplicatorTest {
+
+    private static Barcode barcode(String value, BarcodeFormat format) {
+        Barcode barcode = mock(Barcode.class);
+        when(barcode.getValue()).thenReturn(value);
+        when(barcode.getBarcodeFormat()).thenReturn(format);
+        return barcode;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ScanResult<?> barcodeResult(Barcode... barcodes) {
+        ScanResult scanResult = mock(ScanResult.class);
+        when(scanResult.getPluginId()).thenReturn("barcode");
+        when(scanResult.getResult()).thenReturn(Arrays.asList(barcodes));
+        return scanResult;
+    }
+
+    @Test
+    public void dropsRepeatedBarcodeResult() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(1000);
+
+        assertFalse(deduplicator.isRepeat(barcodeResult(barcode("4006381333931", BarcodeFormat.EAN_13))));
+        assertTrue(deduplicator.isRepeat(barcodeResult(barcode("4006381333931", BarcodeFormat.EAN_13))));
+    }
+
+    @Test
+    public void dropsRepeatedBarcodesInAnyOrder() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(1000);
+
+        assertFalse(deduplicator.isRepeat(barcodeResult(barcode("A1", BarcodeFormat.QR_CODE),
+                barcode("4006381333931", BarcodeFormat.EAN_13))));
+        assertTrue(deduplicator.isRepeat(barcodeResult(barcode("4006381333931", BarcodeFormat.EAN_13),
+                barcode("A1", BarcodeFormat.QR_CODE))));
+    }
+
+    @Test
+    public void keepsBarcodesWhichDiffer() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(1000);
+
+        assertFalse(deduplicator.isRepeat(barcodeResult(barcode("A1", BarcodeFormat.QR_CODE))));
+        assertFalse(deduplicator.isRepeat(barcodeResult(barcode("A1", BarcodeFormat.DATA_MATRIX))));
+        assertFalse(deduplicator.isRepeat(barcodeResult(barcode("A1", BarcodeFormat.QR_CODE),
+                barcode("B2", BarcodeFormat.QR_CODE))));
+    }
+}
@@ -0,0 +1,89 @@
+package io.anyline.flutter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultProcessorTest {
+
+    private static final long MB = 1024 * 1024;
+
+    // keeps the worker busy with a result until released, so the next ones stay in the queue
+    private static CountDownLatch blockWorker(ResultProcessor processor, long bytes) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        processor.submit(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, bytes, false, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static Runnable record(final List<String> processed, final String name) {
+        return () -> {
+            synchronized (processed) {
+                processed.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void dropsOldestResultBeyondTheBytes() throws InterruptedException {
+        ResultProcessor processor = new ResultProcessor(8, ResultProcessor.OverflowPolicy.DROP_OLDEST, 30 * MB);
+        List<String> processed = new ArrayList<>();
+        final List<String> discarded = new ArrayList<>();
+        CountDownLatch release = blockWorker(processor, 10 * MB);
+
+        assertTrue(processor.submit(record(processed, "a"), 10 * MB, false, () -> discarded.add("a")));
+        assertTrue(processor.submit(record(processed, "b"), 10 * MB, false, () -> discarded.add("b")));
+        // the queue has room, the bytes do not
+        assertTrue(processor.submit(record(processed, "c"), 10 * MB, false, () -> discarded.add("c")));
+
+        assertEquals(Collections.singletonList("a"), discarded);
+        assertEquals(2, processor.getQueueDepth());
+        assertEquals(1, processor.getDroppedCount());
+        release.countDown();
+        processor.shutdown();
+    }
+
+    @Test
+    public void dropsNewestResultBeforeItIsPrepared() throws InterruptedException {
+        ResultProcessor processor = new ResultProcessor(1, ResultProcessor.OverflowPolicy.DROP_NEWEST, 64 * MB);
+        List<String> processed = new ArrayList<>();
+        CountDownLatch release = blockWorker(processor, 0);
+
+        assertFalse(processor.dropIfFull(false));
+        assertTrue(processor.submit(record(processed, "a"), 0, false, null));
+        assertTrue(processor.dropIfFull(false));
+        // the final result is never dropped
+        assertFalse(processor.dropIfFull(true));
+
+        assertEquals(1, processor.getDroppedCount());
+        release.countDown();
+        processor.shutdown();
+    }
+
+    @Test
+    public void acceptsSingleResultBeyondTheBytes() throws InterruptedException {
+        ResultProcessor processor = new ResultProcessor(8, ResultProcessor.OverflowPolicy.DROP_NEWEST, 10 * MB);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        assertTrue(processor.submit(done::countDown, 48 * MB, false, null));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        processor.shutdown();
+    }
+}
@@ -0,0 +1,120 @@
+package io.anyline.flutter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScanTraceTest {
+
+    private static List<String> phases(ScanTrace trace) {
+        List<String> phases = new ArrayList<>();
+        for (Map<String, Object> span : trace.getSpans()) {
+            phases.add((String) span.get("phase"));
+        }
+        return phases;
+    }
+
+    private static int count(List<String> phases, String phase) {
+        int count = 0;
+        for (String p : phases) {
+            if (p.equals(phase)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void recordsSetupPhasesOnce() {
+        ScanTrace trace = new ScanTrace(ScanTrace.VIEW_CREATED);
+
+        trace.mark(ScanTrace.CAMERA_OPENED);
+        trace.mark(ScanTrace.FIRST_FRAME);
+        trace.mark(ScanTrace.FIRST_FRAME);
+        trace.mark(ScanTrace.CAMERA_OPENED);
+
+        List<String> phases = phases(trace);
+        assertEquals(ScanTrace.VIEW_CREATED, phases.get(0));
+        assertEquals(1, count(phases, ScanTrace.CAMERA_OPENED));
+        assertEquals(1, count(phases, ScanTrace.FIRST_FRAME));
+    }
+
+    @Test
+    public void keepsTheLastResultsOfContinuousScan() {
+        ScanTrace trace = new ScanTrace(ScanTrace.METHOD_CALL);
+        trace.mark(ScanTrace.FIRST_FRAME);
+
+        for (int i = 0; i < 1000; i++) {
+            trace.mark(ScanTrace.RESULT_RECEIVED);
+            trace.mark(ScanTrace.RESULT_RETURNED);
+        }
+        trace.mark(ScanTrace.RESULT_RECEIVED);
+        trace.mark(ScanTrace.IMAGES_ENCODED);
+        trace.mark(ScanTrace.RESULT_RETURNED);
+
+        List<String> phases = phases(trace);
+        // the setup is never dropped, the result spans are bounded
+        assertEquals(ScanTrace.METHOD_CALL, phases.get(0));
+        assertEquals(1, count(phases, ScanTrace.FIRST_FRAME));
+        assertTrue(phases.size() <= 2 + 256);
+        assertEquals(ScanTrace.IMAGES_ENCODED, phases.get(phases.size() - 2));
+        assertEquals(ScanTrace.RESULT_RETURNED, phases.get(phases.size() - 1));
+    }
+
+    @Test
+    public void ignoresMarksOnceFinished() {
+        ScanTrace trace = new ScanTrace(ScanTrace.VIEW_CREATED);
+        trace.mark(ScanTrace.RESULT_RETURNED);
+        trace.finish();
+
+        trace.mark(ScanTrace.RESULT_RECEIVED);
+
+        assertEquals(2, trace.getSpans().size());
+        assertFalse(trace.isTracing());
+    }
+
+    @Test
+    public void tracesEveryScanOnItsOwn() {
+        ScanTrace scan = ScanTrace.startScan();
+        ScanTrace view = new ScanTrace(ScanTrace.VIEW_CREATED);
+
+        view.mark(ScanTrace.RESULT_RETURNED);
+        scan.mark(ScanTrace.CONFIG_PARSED);
+
+        assertSame(scan, ScanTrace.getScan());
+        assertEquals(2, view.getSpans().size());
+        assertEquals(ScanTrace.CONFIG_PARSED, phases(ScanTrace.getScan()).get(1));
+        assertNotSame(scan, ScanTrace.startScan());
+        assertEquals(1, ScanTrace.getScan().getSpans().size());
+    }
+
+    @Test
+    public void reportsTheStateOfTheResultQueue() {
+        ScanTrace trace = new ScanTrace(ScanTrace.METHOD_CALL);
+
+        trace.markQueued(3, 2);
+
+        Map<String, Object> queued = trace.getSpans().get(1);
+        assertEquals(ScanTrace.RESULT_QUEUED, queued.get("phase"));
+        assertEquals(3, queued.get("queueDepth"));
+        assertEquals(2, queued.get("droppedResults"));
+    }
+
+    @Test
+    public void measuresSpansFromTheStart() {
+        ScanTrace trace = new ScanTrace(ScanTrace.METHOD_CALL);
+        trace.mark(ScanTrace.CONFIG_PARSED);
+
+        Map<String, Object> start = trace.getSpans().get(0);
+        assertEquals(0.0, start.get("elapsedMillis"));
+        assertEquals(0.0, start.get("sinceLastMillis"));
+    }
+}
@@ -9,6 +9,8 @@ import 'package:permission_handler/permission_handler.dart';
 /// Entrypoint for perfoming any scans using the Anyline OCR library.
 class AnylinePlugin {
   static const MethodChannel _channel = const MethodChannel('anyline_plugin');
+  static const EventChannel _resultChannel =
+      const EventChannel(Constants.EVENT_CHANNEL_RESULTS);
 
   AnylinePlugin();
 
@@ -19,11 +21,20 @@ class AnylinePlugin {
     return version;
   }
 
+  /// Initializes the Anyline SDK ahead of time with the given [configJson].
+  ///
+  /// Validates the license, parses the config and installs the OCR traineddata
+  /// in the background, so a following [startScanning] with the same license
+  /// only has to open the camera. Calling it is optional.
   static Future initScanning(String configJson) async {
     final Map<String, String> config = {
       Constants.EXTRA_CONFIG_JSON: configJson
     };
-    await _channel.invokeMethod(Constants.METHOD_INIT_ANYLINE, config);
+    try {
+      await _channel.invokeMethod(Constants.METHOD_INIT_ANYLINE, config);
+    } on PlatformException catch (e) {
+      throw AnylineException.parse(e);
+    }
   }
 
   /// Starts the Anyline SDK and invokes the scanning process with the given [configJson].
@@ -33,17 +44,128 @@ class AnylinePlugin {
   /// and how to parse it, visit the [Anyline Documentation](https://documentation.anyline.com).
   ///
   /// Uses the third-party-package `permission_handler` to request camera permissions.
-  Future<String> startScanning(String configJson) async {
+  ///
+  /// With [session] the scan view is kept alive with its camera after the
+  /// result, so the next scan with the same config starts right away. The
+  /// session ends with [closeSession]. Currently Android only, document scans
+  /// always start a new scan view.
+  Future<String> startScanning(String configJson, {bool session = false}) async {
+    final String result = await _startScanning(configJson, false, session);
+    return result;
+  }
+
+  /// Same as [startScanning], but the result is transferred as structured data
+  /// instead of a JSON string, so it does not have to be decoded again.
+  ///
+  /// Numbers (e.g. `confidence` and the `outline` coordinates) and lists (e.g.
+  /// `detectedBarcodes`) arrive as native Dart values. On platforms without
+  /// structured transport the JSON string is decoded instead.
+  Future<Map<String, dynamic>> startScanningStructured(String configJson,
+      {bool session = false}) async {
+    final dynamic result = await _startScanning(configJson, true, session);
+    if (result == null) {
+      return null;
+    } else if (result is String) {
+      return jsonDecode(result);
+    }
+    return Map<String, dynamic>.from(result);
+  }
+
+  /// Starts a scan with the given [configJson] and emits every result on the
+  /// returned stream, including the intermediate ones of a config with
+  /// `"cancelOnResult": false`.
+  ///
+  /// The results are JSON strings, or maps if [structured] is true (see
+  /// [startScanningStructured]). The stream closes when the scan activity is
+  /// closed, errors are emitted as [AnylineException]. Currently Android only.
+  Stream<dynamic> startScanningContinuous(String configJson,
+      {bool structured = false}) {
+    return _startScanningContinuous(configJson, structured, null);
+  }
+
+  /// Same as [startScanningContinuous], but the results are grouped into
+  /// batches: a list is emitted once [batchSize] results are waiting or
+  /// [batchInterval] after the first of them, whichever comes first.
+  ///
+  /// With [demand] only that many results are sent until more are requested
+  /// with [requestResults], e.g. once the UI has shown the ones it got. The
+  /// results in between are held, at most [bufferSize] of them (the oldest are
+  /// dropped), and emitted in lists of at most [batchSize] once requested.
+  /// Currently Android only.
+  Stream<List<dynamic>> startScanningBatched(String configJson,
+      {bool structured = false,
+      int batchSize,
+      Duration batchInterval,
+      int demand,
+      int bufferSize}) {
+    final Map<String, dynamic> options = {
+      Constants.EXTRA_BATCH_SIZE: batchSize,
+      Constants.EXTRA_BATCH_INTERVAL: batchInterval?.inMilliseconds,
+      Constants.EXTRA_DEMAND: demand,
+      Constants.EXTRA_BUFFER_SIZE: bufferSize
+    };
+    options.removeWhere((key, value) => value == null);
+    if (batchSize == null && batchInterval == null) {
+      // results are only sent as lists if batches are asked for
+      options[Constants.EXTRA_BATCH_SIZE] = 1;
+    }
+    return _startScanningContinuous(configJson, structured, options)
+        .map((batch) => List<dynamic>.from(batch));
+  }
+
+  /// Allows the stream of [startScanningBatched] to send [count] more results.
+  static Future requestResults(int count) async {
+    await _channel.invokeMethod(
+        Constants.METHOD_REQUEST_RESULTS, {Constants.EXTRA_DEMAND: count});
+  }
+
+  Stream<dynamic> _startScanningContinuous(
+      String configJson, bool structured, Map<String, dynamic> options) {
+    StreamController<dynamic> controller;
+    StreamSubscription<dynamic> subscription;
+    controller = StreamController<dynamic>(
+      onListen: () {
+        subscription = _resultChannel.receiveBroadcastStream(options).listen(
+            controller.add,
+            onError: (e) => controller.addError(AnylineException.parse(e)),
+            onDone: controller.close);
+        // results, errors and the end of the scan arrive on the result stream,
+        // the call only reports what happens before the scan activity starts
+        _startScanning(configJson, structured).then((result) {
+          if (result == null && !controller.isClosed) {
+            controller.close();
+          }
+        }).catchError((e) {
+          if (!controller.isClosed) {
+            controller.addError(e);
+            controller.close();
+          }
+        });
+      },
+      onCancel: () => subscription?.cancel(),
+    );
+    return controller.stream;
+  }
+
+  /// Closes the scan view kept alive by a scan with `session: true` and
+  /// releases its camera.
+  static Future closeSession() async {
+    await _channel.invokeMethod(Constants.METHOD_CLOSE_SESSION);
+  }
+
+  Future<dynamic> _startScanning(String configJson, bool structured,
+      [bool session = false]) async {
     if (await Permission.camera.isPermanentlyDenied) {
       openAppSettings();
     } else if (await Permission.camera.request().isGranted) {
-      final Map<String, String> config = {
-        Constants.EXTRA_CONFIG_JSON: configJson
+      final Map<String, dynamic> config = {
+        Constants.EXTRA_CONFIG_JSON: configJson,
+        Constants.EXTRA_STRUCTURED_RESULT: structured,
+        Constants.EXTRA_SESSION: session
       };
       try {
-        final String result =
-            await _channel.invokeMethod(Constants.METHOD_START_ANYLINE, config);
-        return result;
+        return await _channel.invokeMethod(
+            Constants.METHOD_START_ANYLINE, config);
       } on PlatformException catch (e) {
         throw AnylineException.parse(e);
       }
@@ -52,6 +174,86 @@ class AnylinePlugin {
     }
   }
 
+  /// Returns the image paths (`imagePath`, `fullImagePath`) of a result which
+  /// was reported before its images were saved.
+  ///
+  /// Used with `"imageDelivery": "deferred"` in the config options: the result
+  /// then only contains a `resultId`, and the returned future completes once
+  /// the images are written. With `"destination": "bytes"` in the `imageOutput`
+  /// block the images are returned as `Uint8List` (`imageBytes`,
+  /// `fullImageBytes`) instead. Can be called once per result. Currently
+  /// Android only.
+  static Future<Map<String, dynamic>> getResultImages(String resultId) async {
+    try {
+      final Map images = await _channel.invokeMethod(
+          Constants.METHOD_GET_RESULT_IMAGES,
+          {Constants.EXTRA_RESULT_ID: resultId});
+      return Map<String, dynamic>.from(images);
+    } on PlatformException catch (e) {
+      throw AnylineException.parse(e);
+    }
+  }
+
+  /// Keeps the given result images (e.g. `imagePath` and `fullImagePath` of a
+  /// result) from being deleted by the image cache.
+  ///
+  /// The plugin deletes its least recently used images once the budget of the
+  /// `imageCache` block in the config options is exceeded (100 MB and 200
+  /// files by default). Currently Android only.
+  static Future pinResultImages(List<String> imagePaths) async {
+    await _channel.invokeMethod(Constants.METHOD_PIN_RESULT_IMAGES,
+        {Constants.EXTRA_IMAGE_PATHS: imagePaths});
+  }
+
+  /// Deletes the given result images, e.g. once they are uploaded or copied
+  /// elsewhere. Only images written by the plugin are deleted. Currently
+  /// Android only.
+  static Future releaseResultImages(List<String> imagePaths) async {
+    await _channel.invokeMethod(Constants.METHOD_RELEASE_RESULT_IMAGES,
+        {Constants.EXTRA_IMAGE_PATHS: imagePaths});
+  }
+
+  /// Encodes the image behind an image handle (`imageHandle`,
+  /// `fullImageHandle`) of a result and returns its path, or its bytes as
+  /// `Uint8List` with `"destination": "bytes"`.
+  ///
+  /// Used with `"imageDelivery": "lazy"` in the config options. [imageOutput]
+  /// takes the keys of the `imageOutput` config block (e.g. `maxDimension`,
+  /// `format`, `quality`), so the same handle can be encoded at several sizes.
+  /// Currently Android only.
+  static Future<dynamic> getImage(String imageHandle,
+      {Map<String, dynamic> imageOutput}) async {
+    try {
+      return await _channel.invokeMethod(Constants.METHOD_GET_IMAGE, {
+        Constants.EXTRA_IMAGE_HANDLE: imageHandle,
+        Constants.EXTRA_IMAGE_OUTPUT: imageOutput
+      });
+    } on PlatformException catch (e) {
+      throw AnylineException.parse(e);
+    }
+  }
+
+  /// Releases the image behind an image handle. Handles which are not used
+  /// are released after the `imageHandleTimeout` of the config options (60
+  /// seconds by default). Currently Android only.
+  static Future releaseImage(String imageHandle) async {
+    await _channel.invokeMethod(Constants.METHOD_RELEASE_IMAGE,
+        {Constants.EXTRA_IMAGE_HANDLE: imageHandle});
+  }
+
+  /// Returns when the phases of the last scan were reached, as a list of
+  /// `{"phase": ..., "elapsedMillis": ..., "sinceLastMillis": ...}` in the
+  /// order they were reached, from the call which started the scan to the
+  /// returned result.
+  ///
+  /// With `"scanTrace": "log"` in the config options the trace is also logged
+  /// once the scan is done. Currently Android only.
+  static Future<List<Map<String, dynamic>>> getScanTrace() async {
+    final List spans =
+        await _channel.invokeMethod(Constants.METHOD_GET_SCAN_TRACE);
+    return spans.map((span) => Map<String, dynamic>.from(span)).toList();
+  }
+
   /// Decodes the license and returns the expiration date.
   ///
   /// Can be provided with a full configJson string or with just the license string.
@@ -0,0 +1,164 @@
+import 'dart:async';
+
+import 'package:anyline_plugin/constants.dart';
+import 'package:anyline_plugin/exceptions.dart';
+import 'package:flutter/foundation.dart';
+import 'package:flutter/services.dart';
+import 'package:flutter/widgets.dart';
+import 'package:permission_handler/permission_handler.dart';
+
+/// Scans with the given [configJson] inside the widget tree, instead of the
+/// separate scan screen of [AnylinePlugin.startScanning], so widgets can be
+/// drawn on top of the camera.
+///
+/// Takes the same config and reports the same results: every result is
+/// passed to [onResult] as JSON string, or as map if [structured] is true.
+/// With `"cancelOnResult": true` the view stops scanning after the result
+/// until it is started again with its [AnylineScanViewController]. While the
+/// app is in the background the view releases the camera, and scans on once
+/// the app is resumed if it was scanning before. Errors are
+/// passed to [onError]. Document configs are not supported. Currently Android
+/// only.
+class AnylineScanView extends StatefulWidget {
+  final String configJson;
+  final bool structured;
+  final ValueChanged<dynamic> onResult;
+  final ValueChanged<AnylineException> onError;
+  final ValueChanged<AnylineScanViewController> onCreated;
+
+  const AnylineScanView(
+      {Key key,
+      @required this.configJson,
+      @required this.onResult,
+      this.structured = false,
+      this.onError,
+      this.onCreated})
+      : super(key: key);
+
+  @override
+  State<AnylineScanView> createState() => _AnylineScanViewState();
+}
+
+/// Starts and stops the scanning of an [AnylineScanView].
+class AnylineScanViewController {
+  final MethodChannel _channel;
+  final EventChannel _resultChannel;
+
+  AnylineScanViewController._(int viewId)
+      : _channel = MethodChannel('${Constants.VIEW_TYPE_SCAN_VIEW}_$viewId'),
+        _resultChannel =
+            EventChannel('${Constants.VIEW_TYPE_SCAN_VIEW}_$viewId/results');
+
+  /// Opens the camera and starts scanning, also used to scan again after a
+  /// result with `"cancelOnResult": true`.
+  Future start() async {
+    try {
+      await _channel.invokeMethod(Constants.METHOD_START_SCAN_VIEW);
+    } on PlatformException catch (e) {
+      throw AnylineException.parse(e);
+    }
+  }
+
+  /// Stops scanning and releases the camera, e.g. while the app is paused.
+  Future stop() async {
+    await _channel.invokeMethod(Constants.METHOD_STOP_SCAN_VIEW);
+  }
+
+  // the app went to the background, see AnylineScanPlatformView
+  Future _pause() async {
+    await _channel.invokeMethod(Constants.METHOD_PAUSE_SCAN_VIEW);
+  }
+
+  Future _resume() async {
+    await _channel.invokeMethod(Constants.METHOD_RESUME_SCAN_VIEW);
+  }
+
+  /// Returns when the phases of the scan of this view were reached, like
+  /// [AnylinePlugin.getScanTrace] for the scan screen. The trace starts with
+  /// `viewCreated`, or with `methodCall` for a scan started again after the
+  /// last one was done.
+  Future<List<Map<String, dynamic>>> getScanTrace() async {
+    final List spans =
+        await _channel.invokeMethod(Constants.METHOD_GET_SCAN_TRACE);
+    return spans.map((span) => Map<String, dynamic>.from(span)).toList();
+  }
+}
+
+class _AnylineScanViewState extends State<AnylineScanView>
+    with WidgetsBindingObserver {
+  StreamSubscription<dynamic> _subscription;
+  AnylineScanViewController _controller;
+
+  @override
+  void initState() {
+    super.initState();
+    WidgetsBinding.instance.addObserver(this);
+  }
+
+  @override
+  void didChangeAppLifecycleState(AppLifecycleState state) {
+    if (_controller == null) {
+      return;
+    }
+    // not on inactive, which is also reached while the permission dialog is
+    // shown
+    if (state == AppLifecycleState.paused) {
+      _controller._pause();
+    } else if (state == AppLifecycleState.resumed) {
+      _controller._resume();
+    }
+  }
+
+  @override
+  Widget build(BuildContext context) {
+    if (defaultTargetPlatform != TargetPlatform.android) {
+      return const Text('AnylineScanView is currently Android only.');
+    }
+    return AndroidView(
+      viewType: Constants.VIEW_TYPE_SCAN_VIEW,
+      creationParams: {
+        Constants.EXTRA_CONFIG_JSON: widget.configJson,
+        Constants.EXTRA_STRUCTURED_RESULT: widget.structured
+      },
+      creationParamsCodec: const StandardMessageCodec(),
+      onPlatformViewCreated: _onPlatformViewCreated,
+    );
+  }
+
+  Future _onPlatformViewCreated(int viewId) async {
+    final AnylineScanViewController controller =
+        AnylineScanViewController._(viewId);
+    _controller = controller;
+    // listening before the start, so no result is missed
+    _subscription = controller._resultChannel.receiveBroadcastStream().listen(
+        (result) => widget.onResult(result),
+        onError: (e) => _onError(AnylineException.parse(e)));
+    if (widget.onCreated != null) {
+      widget.onCreated(controller);
+    }
+    if (await Permission.camera.isPermanentlyDenied) {
+      openAppSettings();
+    } else if (await Permission.camera.request().isGranted) {
+      try {
+        await controller.start();
+      } on AnylineException catch (e) {
+        _onError(e);
+      }
+    } else {
+      _onError(AnylineCameraPermissionException('Camera permission missing.'));
+    }
+  }
+
+  void _onError(AnylineException e) {
+    if (widget.onError != null) {
+      widget.onError(e);
+    }
+  }
+
+  @override
+  void dispose() {
+    WidgetsBinding.instance.removeObserver(this);
+    _subscription?.cancel();
+    super.dispose();
+  }
+}
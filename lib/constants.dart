@@ -3,9 +3,36 @@ abstract class Constants {
   static const String METHOD_GET_SDK_VERSION = "METHOD_GET_SDK_VERSION";
   static const String METHOD_START_ANYLINE = "METHOD_START_ANYLINE";
   static const String METHOD_INIT_ANYLINE = "METHOD_INIT_ANYLINE";
+  static const String METHOD_GET_RESULT_IMAGES = "METHOD_GET_RESULT_IMAGES";
+  static const String METHOD_PIN_RESULT_IMAGES = "METHOD_PIN_RESULT_IMAGES";
+  static const String METHOD_RELEASE_RESULT_IMAGES =
+      "METHOD_RELEASE_RESULT_IMAGES";
+  static const String METHOD_GET_IMAGE = "METHOD_GET_IMAGE";
+  static const String METHOD_RELEASE_IMAGE = "METHOD_RELEASE_IMAGE";
+  static const String METHOD_REQUEST_RESULTS = "METHOD_REQUEST_RESULTS";
+  static const String METHOD_CLOSE_SESSION = "METHOD_CLOSE_SESSION";
+  static const String METHOD_START_SCAN_VIEW = "METHOD_START_SCAN_VIEW";
+  static const String METHOD_STOP_SCAN_VIEW = "METHOD_STOP_SCAN_VIEW";
+  static const String METHOD_PAUSE_SCAN_VIEW = "METHOD_PAUSE_SCAN_VIEW";
+  static const String METHOD_RESUME_SCAN_VIEW = "METHOD_RESUME_SCAN_VIEW";
+  static const String METHOD_GET_SCAN_TRACE = "METHOD_GET_SCAN_TRACE";
+
+  static const String EVENT_CHANNEL_RESULTS = "anyline_plugin/results";
+
+  static const String VIEW_TYPE_SCAN_VIEW = "anyline_plugin/scan_view";
 
   static const String EXTRA_CONFIG_JSON = "EXTRA_CONFIG_JSON";
   static const String EXTRA_LICENSE_KEY = "EXTRA_LICENSE_KEY";
+  static const String EXTRA_STRUCTURED_RESULT = "EXTRA_STRUCTURED_RESULT";
+  static const String EXTRA_RESULT_ID = "EXTRA_RESULT_ID";
+  static const String EXTRA_IMAGE_PATHS = "EXTRA_IMAGE_PATHS";
+  static const String EXTRA_IMAGE_HANDLE = "EXTRA_IMAGE_HANDLE";
+  static const String EXTRA_IMAGE_OUTPUT = "EXTRA_IMAGE_OUTPUT";
+  static const String EXTRA_BATCH_SIZE = "EXTRA_BATCH_SIZE";
+  static const String EXTRA_BATCH_INTERVAL = "EXTRA_BATCH_INTERVAL";
+  static const String EXTRA_DEMAND = "EXTRA_DEMAND";
+  static const String EXTRA_BUFFER_SIZE = "EXTRA_BUFFER_SIZE";
+  static const String EXTRA_SESSION = "EXTRA_SESSION";
 
   static const String EXCEPTION_DEFAULT = "AnylineException";
   static const String EXCEPTION_LICENSE = "AnylineLicenseException";
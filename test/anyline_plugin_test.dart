@@ -1,17 +1,234 @@
+import 'dart:async';
+
 import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:anyline_plugin/anyline_plugin.dart';
+import 'package:anyline_plugin/constants.dart';
+import 'package:anyline_plugin/exceptions.dart';
+
+const MethodChannel channel = MethodChannel('anyline_plugin');
+const MethodChannel permissionChannel =
+    MethodChannel('flutter.baseflow.com/permissions/methods');
+const StandardMethodCodec codec = StandardMethodCodec();
+
+final List<MethodCall> calls = <MethodCall>[];
+dynamic listenArguments;
+
+// sends an event of the native result stream
+void emitResult(dynamic result) {
+  ServicesBinding.instance.defaultBinaryMessenger.handlePlatformMessage(
+      Constants.EVENT_CHANNEL_RESULTS,
+      codec.encodeSuccessEnvelope(result),
+      (ByteData reply) {});
+}
+
+void emitError(String code, String message) {
+  ServicesBinding.instance.defaultBinaryMessenger.handlePlatformMessage(
+      Constants.EVENT_CHANNEL_RESULTS,
+      codec.encodeErrorEnvelope(code: code, message: message),
+      (ByteData reply) {});
+}
+
+void endResults() {
+  ServicesBinding.instance.defaultBinaryMessenger.handlePlatformMessage(
+      Constants.EVENT_CHANNEL_RESULTS, null, (ByteData reply) {});
+}
+
+// lets the permission request and the channel calls complete
+Future<void> settle() async {
+  for (int i = 0; i < 20; i++) {
+    await Future<void>.delayed(Duration.zero);
+  }
+}
 
 void main() {
   TestWidgetsFlutterBinding.ensureInitialized();
 
-  setUp(() {});
+  setUp(() {
+    permissionChannel.setMockMethodCallHandler((MethodCall call) async {
+      // the camera (1) is granted (1)
+      if (call.method == 'requestPermissions') {
+        return {1: 1};
+      }
+      return 1;
+    });
+    channel.setMockMethodCallHandler((MethodCall call) async {
+      calls.add(call);
+      if (call.method == Constants.METHOD_START_ANYLINE) {
+        return 'final result';
+      }
+      return null;
+    });
+    ServicesBinding.instance.defaultBinaryMessenger.setMockMessageHandler(
+        Constants.EVENT_CHANNEL_RESULTS, (ByteData message) async {
+      final MethodCall call = codec.decodeMethodCall(message);
+      if (call.method == 'listen') {
+        listenArguments = call.arguments;
+      }
+      return codec.encodeSuccessEnvelope(null);
+    });
+  });
 
-  tearDown(() {});
+  tearDown(() {
+    permissionChannel.setMockMethodCallHandler(null);
+    channel.setMockMethodCallHandler(null);
+    ServicesBinding.instance.defaultBinaryMessenger
+        .setMockMessageHandler(Constants.EVENT_CHANNEL_RESULTS, null);
+    calls.clear();
+    listenArguments = null;
+  });
 
   test('getLicenseExpiryDate should return correct expiry date', () {
     String license =
         'ewogICJsaWNlbnNlS2V5VmVyc2lvbiI6IDIsCiAgImRlYnVnUmVwb3J0aW5nIjogIm9uIiwKICAiaW1hZ2VSZXBvcnRDYWNoaW5nIjogdHJ1ZSwKICAibWFqb3JWZXJzaW9uIjogIjQiLAogICJtYXhEYXlzTm90UmVwb3J0ZWQiOiAwLAogICJwaW5nUmVwb3J0aW5nIjogdHJ1ZSwKICAicGxhdGZvcm0iOiBbCiAgICAiaU9TIiwKICAgICJBbmRyb2lkIgogIF0sCiAgInNjb3BlIjogWwogICAgIkFMTCIKICBdLAogICJzaG93UG9wVXBBZnRlckV4cGlyeSI6IHRydWUsCiAgInNob3dXYXRlcm1hcmsiOiB0cnVlLAogICJ0b2xlcmFuY2VEYXlzIjogMywKICAidmFsaWQiOiAiMjAyMS0xMC0zMSIsCiAgImlvc0lkZW50aWZpZXIiOiBbCiAgICAiaW8uYW55bGluZS5mbHV0dGVyLmV4YW1wbGVzIgogIF0sCiAgImFuZHJvaWRJZGVudGlmaWVyIjogWwogICAgImlvLmFueWxpbmUuZmx1dHRlci5leGFtcGxlcyIKICBdCn0KTlQ4S2EzNHJwaTNBQW5oZGdWR1EyTnQ2NHlQMGNtYUkrTWIrMVVEcWg0MGM4RzlxdmlsWDBybWVSOU5CVG9xa2pSV29HK0J3WnhtMnZqck53QnMva29EdldxRG1xV3hTdlkyRzBBeXhGOEt5WHBwSk5SQUlUV1JGbk5ta3ZZUHNhQlo3UzlZMkMvek44dkF3eVNTb2dJbmhPbjkvWUlEMktPTGVXblJVOTF4dWlDT01iZEU4OE0rYjA5L3BXYmVCbmRrdVlRalBRQmM5cmdIQ2FkV0R2clp6TCs2QUlPMU42V2JrQ0ovUHM3ZDRjWGxrVnpjMnZ5WlZTcVo5WitEZytDN25SQnFNKzEvRHBNQ1dBWVNOZHJlS0FvbUN4eFEvb3VNcHpzNXQvQStudkl6MTFhS3dBallSdDJOMC9aTmZBWkFabFI3VkN4aHpuRXpwaTFvSUJBPT0=';
     expect(AnylinePlugin.getLicenseExpiryDate(license), '2021-10-31');
   });
+
+  group('startScanningContinuous', () {
+    test('emits every result until the result stream ends', () async {
+      final List<dynamic> results = <dynamic>[];
+      final Completer<void> done = Completer<void>();
+      AnylinePlugin()
+          .startScanningContinuous('{}')
+          .listen(results.add, onDone: done.complete);
+      await settle();
+
+      expect(listenArguments, isNull);
+      expect(calls.single.method, Constants.METHOD_START_ANYLINE);
+      expect(calls.single.arguments[Constants.EXTRA_CONFIG_JSON], '{}');
+      expect(calls.single.arguments[Constants.EXTRA_STRUCTURED_RESULT], false);
+
+      emitResult('first');
+      emitResult('second');
+      endResults();
+      await done.future;
+
+      expect(results, <dynamic>['first', 'second']);
+    });
+
+    test('passes structured results as they are', () async {
+      final List<dynamic> results = <dynamic>[];
+      AnylinePlugin()
+          .startScanningContinuous('{}', structured: true)
+          .listen(results.add);
+      await settle();
+
+      emitResult(<String, dynamic>{'confidence': 90});
+      await settle();
+
+      expect(calls.single.arguments[Constants.EXTRA_STRUCTURED_RESULT], true);
+      expect(results.single['confidence'], 90);
+    });
+
+    test('emits errors of the scan as AnylineException', () async {
+      final List<dynamic> errors = <dynamic>[];
+      final Completer<void> done = Completer<void>();
+      AnylinePlugin().startScanningContinuous('{}').listen((_) {},
+          onError: errors.add, onDone: done.complete);
+      await settle();
+
+      emitError(Constants.EXCEPTION_LICENSE, 'expired');
+      endResults();
+      await done.future;
+
+      expect(errors.single, isA<AnylineLicenseException>());
+      expect(errors.single.message, 'expired');
+    });
+
+    test('closes the stream if the scan is cancelled', () async {
+      channel.setMockMethodCallHandler((MethodCall call) async => null);
+      final Completer<void> done = Completer<void>();
+      AnylinePlugin()
+          .startScanningContinuous('{}')
+          .listen((_) {}, onDone: done.complete);
+
+      await done.future;
+    });
+  });
+
+  group('startScanningBatched', () {
+    test('passes the batch options to the result stream', () async {
+      AnylinePlugin()
+          .startScanningBatched('{}',
+              batchSize: 5,
+              batchInterval: const Duration(milliseconds: 250),
+              demand: 2,
+              bufferSize: 16)
+          .listen((_) {});
+      await settle();
+
+      expect(listenArguments, <String, dynamic>{
+        Constants.EXTRA_BATCH_SIZE: 5,
+        Constants.EXTRA_BATCH_INTERVAL: 250,
+        Constants.EXTRA_DEMAND: 2,
+        Constants.EXTRA_BUFFER_SIZE: 16
+      });
+    });
+
+    test('asks for batches of one result if only the demand is given',
+        () async {
+      AnylinePlugin().startScanningBatched('{}', demand: 1).listen((_) {});
+      await settle();
+
+      expect(listenArguments, <String, dynamic>{
+        Constants.EXTRA_DEMAND: 1,
+        Constants.EXTRA_BATCH_SIZE: 1
+      });
+    });
+
+    test('emits the batches and the flushed rest before the stream ends',
+        () async {
+      final List<List<dynamic>> batches = <List<dynamic>>[];
+      final Completer<void> done = Completer<void>();
+      AnylinePlugin()
+          .startScanningBatched('{}', batchSize: 2)
+          .listen(batches.add, onDone: done.complete);
+      await settle();
+
+      emitResult(<dynamic>['first', 'second']);
+      // the rest is flushed by the native side when the scan ends
+      emitResult(<dynamic>['third']);
+      endResults();
+      await done.future;
+
+      expect(batches, <List<dynamic>>[
+        <dynamic>['first', 'second'],
+        <dynamic>['third']
+      ]);
+    });
+
+    test('requestResults adds to the demand', () async {
+      await AnylinePlugin.requestResults(3);
+
+      expect(calls.single.method, Constants.METHOD_REQUEST_RESULTS);
+      expect(calls.single.arguments, <String, dynamic>{
+        Constants.EXTRA_DEMAND: 3
+      });
+    });
+  });
+
+  test('getScanTrace returns the spans of the last scan', () async {
+    channel.setMockMethodCallHandler((MethodCall call) async {
+      calls.add(call);
+      return <dynamic>[
+        <dynamic, dynamic>{
+          'phase': 'methodCall',
+          'elapsedMillis': 0.0,
+          'sinceLastMillis': 0.0
+        },
+        <dynamic, dynamic>{
+          'phase': 'resultReturned',
+          'elapsedMillis': 812.5,
+          'sinceLastMillis': 812.5
+        }
+      ];
+    });
+
+    final List<Map<String, dynamic>> spans = await AnylinePlugin.getScanTrace();
+
+    expect(calls.single.method, Constants.METHOD_GET_SCAN_TRACE);
+    expect(spans.map((span) => span['phase']),
+        <String>['methodCall', 'resultReturned']);
+    expect(spans.last['elapsedMillis'], 812.5);
+  });
 }